@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.ray3k.blastius.entities.CollisionCategory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares one simulation tick of bullets kept in a {@link BulletField} with
+ * the same bullets as individual entities in the {@link EntityManager}. Both
+ * keep the bullet count constant by replacing the bullets that left the world
+ * or hit a target. Run with "gradlew core:benchmark".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BulletBenchmark {
+    private static final float WIDTH = 800.0f;
+    private static final float HEIGHT = 600.0f;
+    private static final float DELTA = 0.01f;
+    private static final float BULLET_SPEED = 400.0f;
+    private static final float BULLET_SIZE = 16.0f;
+    private static final float MARGIN = 50.0f;
+    private static final int TARGETS = 30;
+    
+    @Param({"1000", "10000"})
+    public int bullets;
+    
+    private Random random;
+    private EntityManager fieldManager;
+    private BulletField bulletField;
+    private EntityManager entityManager;
+    private int liveBulletEntities;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        random = new Random(1);
+        
+        fieldManager = new EntityManager(WIDTH, HEIGHT);
+        addTargets(fieldManager);
+        bulletField = new BulletField(fieldManager, new Flipbook("blast", null, null, 0.05f), BULLET_SIZE / 2.0f, WIDTH, HEIGHT, MARGIN);
+        bulletField.addTarget(CollisionCategory.PLAYER_BULLET, CollisionCategory.ENEMY);
+        
+        entityManager = new EntityManager(WIDTH, HEIGHT);
+        addTargets(entityManager);
+        liveBulletEntities = 0;
+        
+        //let both simulations reach a steady spread of bullets
+        for (int i = 0; i < 200; i++) {
+            bulletField();
+            bulletEntities();
+        }
+    }
+    
+    private void addTargets(EntityManager manager) {
+        Random random = new Random(2);
+        for (int i = 0; i < TARGETS; i++) {
+            Target target = new Target();
+            target.setPosition(random.nextFloat() * WIDTH, HEIGHT / 2.0f + random.nextFloat() * HEIGHT / 2.0f);
+            manager.addEntity(target);
+        }
+    }
+    
+    @Benchmark
+    public int bulletField() {
+        for (int i = bulletField.getSize(); i < bullets; i++) {
+            bulletField.emit(random.nextFloat() * WIDTH, 0.0f, BULLET_SPEED, 60.0f + random.nextFloat() * 60.0f, CollisionCategory.PLAYER_BULLET, null, "blue");
+        }
+        fieldManager.act(DELTA);
+        bulletField.act(DELTA);
+        return bulletField.getSize();
+    }
+    
+    @Benchmark
+    public int bulletEntities() {
+        for (int i = liveBulletEntities; i < bullets; i++) {
+            Bullet bullet = new Bullet();
+            bullet.setPosition(random.nextFloat() * WIDTH, 0.0f);
+            bullet.setMotion(BULLET_SPEED, 60.0f + random.nextFloat() * 60.0f);
+            entityManager.addEntity(bullet);
+            liveBulletEntities++;
+        }
+        entityManager.act(DELTA);
+        return liveBulletEntities;
+    }
+    
+    private static class Target extends Entity {
+        public Target() {
+            getCollisionBox().setSize(64.0f, 64.0f);
+            setCollisionCategory(CollisionCategory.ENEMY);
+            setCollisionMask(CollisionCategory.PLAYER_BULLET);
+            setCheckingCollisions(true);
+        }
+        
+        @Override
+        public boolean bulletCollision() {
+            return true;
+        }
+        
+        @Override
+        public void create() {
+        }
+
+        @Override
+        public void act(float delta) {
+        }
+
+        @Override
+        public void actEnd(float delta) {
+        }
+
+        @Override
+        public void draw(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void collision(Entity other) {
+        }
+    }
+    
+    private class Bullet extends Entity {
+        public Bullet() {
+            getCollisionBox().setSize(BULLET_SIZE, BULLET_SIZE);
+            setCollisionBoxX(-BULLET_SIZE / 2.0f);
+            setCollisionBoxY(-BULLET_SIZE / 2.0f);
+            setCollisionCategory(CollisionCategory.PLAYER_BULLET);
+            setCollisionMask(CollisionCategory.ENEMY);
+            setCheckingCollisions(true);
+            setDespawnMargin(MARGIN);
+        }
+        
+        @Override
+        public void create() {
+        }
+
+        @Override
+        public void act(float delta) {
+        }
+
+        @Override
+        public void actEnd(float delta) {
+        }
+
+        @Override
+        public void draw(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+            liveBulletEntities--;
+        }
+
+        @Override
+        public void collision(Entity other) {
+            if (other instanceof Target) {
+                dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.ray3k.blastius.entities.CollisionCategory;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares one tick of moving entities plus a batch of radius, nearest and
+ * raycast queries answered by the {@link EntityManager}'s spatial tree with
+ * the same queries answered by a linear scan over the entities. The linear
+ * scan runs on its own manager, which never builds the tree and so skips its
+ * upkeep. Run with "gradlew core:benchmark".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpatialQueryBenchmark {
+    private static final float WIDTH = 800.0f;
+    private static final float HEIGHT = 600.0f;
+    private static final float DELTA = 0.01f;
+    private static final int QUERIES = 50;
+    private static final float RADIUS = 60.0f;
+    private static final int NEAREST = 3;
+    private static final int MASK = CollisionCategory.ENEMY;
+    
+    @Param({"100", "1000", "10000"})
+    public int entities;
+    
+    private EntityManager treeManager;
+    private EntityManager linearManager;
+    private Array<Entity> linearEntities;
+    private Array<Entity> results;
+    private float[] distances;
+    private float[] queries;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        treeManager = new EntityManager(WIDTH, HEIGHT);
+        linearManager = new EntityManager(WIDTH, HEIGHT);
+        linearEntities = new Array<Entity>();
+        results = new Array<Entity>();
+        distances = new float[NEAREST];
+        
+        Random random = new Random(1);
+        for (int i = 0; i < entities; i++) {
+            float x = random.nextFloat() * WIDTH;
+            float y = random.nextFloat() * HEIGHT;
+            float speed = 20.0f + random.nextFloat() * 60.0f;
+            float direction = random.nextFloat() * 360.0f;
+            int category = random.nextInt(4) == 0 ? CollisionCategory.ENEMY : CollisionCategory.ENEMY_BULLET;
+            treeManager.addEntity(new Drifter(x, y, speed, direction, category));
+            Drifter drifter = new Drifter(x, y, speed, direction, category);
+            linearManager.addEntity(drifter);
+            linearEntities.add(drifter);
+        }
+        
+        queries = new float[QUERIES * 4];
+        for (int i = 0; i < queries.length; i += 2) {
+            queries[i] = random.nextFloat() * WIDTH;
+            queries[i + 1] = random.nextFloat() * HEIGHT;
+        }
+    }
+    
+    @Benchmark
+    public int tree() {
+        treeManager.act(DELTA);
+        int found = 0;
+        for (int i = 0; i < queries.length; i += 4) {
+            treeManager.queryRadius(queries[i], queries[i + 1], RADIUS, MASK, results);
+            found += results.size;
+            treeManager.queryNearest(queries[i], queries[i + 1], NEAREST, MASK, results);
+            found += results.size;
+            if (treeManager.raycast(queries[i], queries[i + 1], queries[i + 2], queries[i + 3], MASK) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+    
+    @Benchmark
+    public int linear() {
+        linearManager.act(DELTA);
+        int found = 0;
+        for (int i = 0; i < queries.length; i += 4) {
+            queryRadius(queries[i], queries[i + 1]);
+            found += results.size;
+            queryNearest(queries[i], queries[i + 1]);
+            found += results.size;
+            if (raycast(queries[i], queries[i + 1], queries[i + 2], queries[i + 3]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+    
+    private void queryRadius(float x, float y) {
+        results.clear();
+        for (Entity entity : linearEntities) {
+            if ((entity.getCollisionCategory() & MASK) != 0 && distanceSquared(x, y, entity.getCollisionBox()) <= RADIUS * RADIUS) {
+                results.add(entity);
+            }
+        }
+    }
+    
+    private void queryNearest(float x, float y) {
+        results.clear();
+        for (Entity entity : linearEntities) {
+            if ((entity.getCollisionCategory() & MASK) != 0) {
+                float distance = distanceSquared(x, y, entity.getCollisionBox());
+                int index = results.size;
+                while (index > 0 && distances[index - 1] > distance) {
+                    index--;
+                }
+                if (index < NEAREST) {
+                    if (results.size == NEAREST) {
+                        results.pop();
+                    }
+                    System.arraycopy(distances, index, distances, index + 1, results.size - index);
+                    distances[index] = distance;
+                    results.insert(index, entity);
+                }
+            }
+        }
+    }
+    
+    private Entity raycast(float x1, float y1, float x2, float y2) {
+        Entity hit = null;
+        float best = 1.0f;
+        for (Entity entity : linearEntities) {
+            if ((entity.getCollisionCategory() & MASK) != 0) {
+                float fraction = fraction(x1, y1, x2, y2, entity.getCollisionBox());
+                if (fraction >= 0.0f && fraction <= best) {
+                    best = fraction;
+                    hit = entity;
+                }
+            }
+        }
+        return hit;
+    }
+    
+    private static float distanceSquared(float x, float y, Rectangle box) {
+        float dx = Math.max(Math.max(box.x - x, x - box.x - box.width), 0.0f);
+        float dy = Math.max(Math.max(box.y - y, y - box.y - box.height), 0.0f);
+        return dx * dx + dy * dy;
+    }
+    
+    /**
+     * Returns the fraction along the segment where it enters the box, or -1 if
+     * it misses.
+     */
+    private static float fraction(float x1, float y1, float x2, float y2, Rectangle box) {
+        float enter = 0.0f;
+        float exit = 1.0f;
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        if (dx == 0.0f) {
+            if (x1 < box.x || x1 > box.x + box.width) {
+                return -1.0f;
+            }
+        } else {
+            float t1 = (box.x - x1) / dx;
+            float t2 = (box.x + box.width - x1) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (dy == 0.0f) {
+            if (y1 < box.y || y1 > box.y + box.height) {
+                return -1.0f;
+            }
+        } else {
+            float t1 = (box.y - y1) / dy;
+            float t2 = (box.y + box.height - y1) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        return enter <= exit ? enter : -1.0f;
+    }
+    
+    /**
+     * Wraps around the world so the entity count stays constant.
+     */
+    private static class Drifter extends Entity {
+        public Drifter(float x, float y, float speed, float direction, int category) {
+            getCollisionBox().setSize(8.0f + (x % 16.0f), 8.0f + (y % 16.0f));
+            setCollisionCategory(category);
+            setPosition(x, y);
+            setMotion(speed, direction);
+        }
+        
+        @Override
+        public void create() {
+        }
+
+        @Override
+        public void act(float delta) {
+            if (getX() < 0.0f) {
+                setX(getX() + WIDTH);
+            } else if (getX() > WIDTH) {
+                setX(getX() - WIDTH);
+            }
+            if (getY() < 0.0f) {
+                setY(getY() + HEIGHT);
+            } else if (getY() > HEIGHT) {
+                setY(getY() - HEIGHT);
+            }
+        }
+
+        @Override
+        public void actEnd(float delta) {
+        }
+
+        @Override
+        public void draw(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void collision(Entity other) {
+        }
+    }
+}
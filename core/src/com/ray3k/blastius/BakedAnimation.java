@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.Animation.MixDirection;
+import com.esotericsoftware.spine.Animation.MixPose;
+import com.esotericsoftware.spine.Bone;
+import com.esotericsoftware.spine.Event;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonBounds;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.Skin;
+
+/**
+ * A looping animation sampled at a fixed time step. Each frame stores the
+ * world transform of every bone relative to the skeleton position, and the
+ * bounding box of each skin relative to the skeleton position. Playing a frame
+ * back writes the world transforms directly, so neither the timelines nor
+ * Skeleton.updateWorldTransform need to be evaluated.
+ */
+public class BakedAnimation {
+    private static final int BONE_STRIDE = 6;
+    private static final int BOUNDS_STRIDE = 4;
+    private final float step;
+    private final int frameCount;
+    private final int boneCount;
+    private final float[] bones;
+    private final ObjectMap<String, float[]> bounds;
+    
+    public BakedAnimation(SkeletonData skeletonData, Animation animation, float step) {
+        this.step = step;
+        frameCount = Math.max(1, MathUtils.ceil(animation.getDuration() / step));
+        
+        Skeleton skeleton = new Skeleton(skeletonData);
+        boneCount = skeleton.getBones().size;
+        bones = new float[frameCount * boneCount * BONE_STRIDE];
+        bounds = new ObjectMap<String, float[]>();
+        
+        SkeletonBounds skeletonBounds = new SkeletonBounds();
+        Array<Event> events = new Array<Event>();
+        boolean bakedBones = false;
+        for (Skin skin : skeletonData.getSkins()) {
+            skeleton.setSkin(skin);
+            skeleton.setToSetupPose();
+            
+            float[] skinBounds = new float[frameCount * BOUNDS_STRIDE];
+            for (int frame = 0; frame < frameCount; frame++) {
+                float time = frame * step;
+                skeleton.setBonesToSetupPose();
+                animation.apply(skeleton, time, time, true, events, 1.0f, MixPose.setup, MixDirection.in);
+                events.clear();
+                skeleton.updateWorldTransform();
+                
+                if (!bakedBones) {
+                    int offset = frame * boneCount * BONE_STRIDE;
+                    for (Bone bone : skeleton.getBones()) {
+                        bones[offset++] = bone.getA();
+                        bones[offset++] = bone.getB();
+                        bones[offset++] = bone.getC();
+                        bones[offset++] = bone.getD();
+                        bones[offset++] = bone.getWorldX();
+                        bones[offset++] = bone.getWorldY();
+                    }
+                }
+                
+                skeletonBounds.update(skeleton, true);
+                int offset = frame * BOUNDS_STRIDE;
+                skinBounds[offset] = skeletonBounds.getMinX();
+                skinBounds[offset + 1] = skeletonBounds.getMinY();
+                skinBounds[offset + 2] = skeletonBounds.getMaxX();
+                skinBounds[offset + 3] = skeletonBounds.getMaxY();
+            }
+            bakedBones = true;
+            bounds.put(skin.getName(), skinBounds);
+        }
+    }
+    
+    public int getFrame(float time) {
+        return (int) (time / step) % frameCount;
+    }
+    
+    /**
+     * Writes the world transforms of the frame to the bones of the skeleton,
+     * offset by the skeleton position.
+     */
+    public void apply(Skeleton skeleton, int frame) {
+        float x = skeleton.getX();
+        float y = skeleton.getY();
+        Array<Bone> skeletonBones = skeleton.getBones();
+        int offset = frame * boneCount * BONE_STRIDE;
+        for (int i = 0; i < boneCount; i++) {
+            Bone bone = skeletonBones.get(i);
+            bone.setA(bones[offset++]);
+            bone.setB(bones[offset++]);
+            bone.setC(bones[offset++]);
+            bone.setD(bones[offset++]);
+            bone.setWorldX(bones[offset++] + x);
+            bone.setWorldY(bones[offset++] + y);
+        }
+    }
+    
+    /**
+     * Returns the bounds of every frame for the named skin as minX, minY, maxX,
+     * maxY quadruples relative to the skeleton position.
+     */
+    public float[] getBounds(String skinName) {
+        return bounds.get(skinName);
+    }
+
+    /**
+     * Returns the world x of the bone at the frame, relative to the skeleton
+     * position.
+     */
+    public float getBoneX(int frame, int bone) {
+        return bones[(frame * boneCount + bone) * BONE_STRIDE + 4];
+    }
+    
+    /**
+     * Returns the world y of the bone at the frame, relative to the skeleton
+     * position.
+     */
+    public float getBoneY(int frame, int bone) {
+        return bones[(frame * boneCount + bone) * BONE_STRIDE + 5];
+    }
+
+    public int getBoneCount() {
+        return boneCount;
+    }
+
+    public float getStep() {
+        return step;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import java.util.Arrays;
+
+/**
+ * Simulates plain projectiles without creating an entity for each one. Bullets
+ * are kept in parallel arrays and moved, collided and drawn in tight loops.
+ * Every tick the live bullets are sorted into a uniform grid so that each
+ * target only tests the bullets near it. Bullets have a fixed velocity, are
+ * drawn as flipbook quads and are removed once they leave the world bounds by
+ * more than the margin.
+ */
+public class BulletField {
+    private static final float CELL_SIZE = 64.0f;
+    private static final int INITIAL_CAPACITY = 256;
+    private final EntityManager manager;
+    private final Flipbook flipbook;
+    private final float radius;
+    private final float width;
+    private final float height;
+    private final float margin;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStarts;
+    private final Array<String> animations;
+    private final IntArray bulletCategories;
+    private final IntArray targetCategories;
+    private final float[] polygon;
+    private int size;
+    private float[] x;
+    private float[] y;
+    private float[] previousX;
+    private float[] previousY;
+    private float[] xSpeed;
+    private float[] ySpeed;
+    private float[] age;
+    private long[] owners;
+    private int[] categories;
+    private int[] animationIndices;
+    private boolean[] spent;
+    private int[] cellBullets;
+    private float maxStep;
+    private int drawnCount;
+    
+    /**
+     * @param radius Half the side of the square each bullet collides with.
+     * @param margin How far bullets may travel past the world bounds before
+     * they are removed.
+     */
+    public BulletField(EntityManager manager, Flipbook flipbook, float radius, float width, float height, float margin) {
+        this.manager = manager;
+        this.flipbook = flipbook;
+        this.radius = radius;
+        this.width = width;
+        this.height = height;
+        this.margin = margin;
+        columns = MathUtils.ceil((width + margin * 2.0f) / CELL_SIZE);
+        rows = MathUtils.ceil((height + margin * 2.0f) / CELL_SIZE);
+        cellStarts = new int[columns * rows + 1];
+        animations = new Array<String>();
+        bulletCategories = new IntArray();
+        targetCategories = new IntArray();
+        polygon = new float[8];
+        x = new float[INITIAL_CAPACITY];
+        y = new float[INITIAL_CAPACITY];
+        previousX = new float[INITIAL_CAPACITY];
+        previousY = new float[INITIAL_CAPACITY];
+        xSpeed = new float[INITIAL_CAPACITY];
+        ySpeed = new float[INITIAL_CAPACITY];
+        age = new float[INITIAL_CAPACITY];
+        owners = new long[INITIAL_CAPACITY];
+        categories = new int[INITIAL_CAPACITY];
+        animationIndices = new int[INITIAL_CAPACITY];
+        spent = new boolean[INITIAL_CAPACITY];
+        cellBullets = new int[INITIAL_CAPACITY];
+    }
+    
+    /**
+     * Makes bullets of the first category hit entities of the second category.
+     * Targets must also include the bullet category in their collision mask
+     * and are notified through {@link Entity#bulletCollision()}.
+     */
+    public void addTarget(int bulletCategory, int targetCategory) {
+        bulletCategories.add(bulletCategory);
+        targetCategories.add(targetCategory);
+    }
+    
+    /**
+     * Adds a bullet moving at the given speed in the direction in degrees.
+     * @param animation The flipbook animation the bullet plays.
+     */
+    public void emit(float x, float y, float speed, float direction, int category, Entity owner, String animation) {
+        if (size == this.x.length) {
+            resize((int) (size * 1.75f));
+        }
+        
+        int animationIndex = animations.indexOf(animation, false);
+        if (animationIndex == -1) {
+            animationIndex = animations.size;
+            animations.add(animation);
+        }
+        
+        int i = size++;
+        this.x[i] = x;
+        this.y[i] = y;
+        previousX[i] = x;
+        previousY[i] = y;
+        xSpeed[i] = MathUtils.cosDeg(direction) * speed;
+        ySpeed[i] = MathUtils.sinDeg(direction) * speed;
+        age[i] = 0.0f;
+        owners[i] = owner == null ? 0 : owner.getHandle();
+        categories[i] = category;
+        animationIndices[i] = animationIndex;
+        spent[i] = false;
+    }
+    
+    public void act(float delta) {
+        float minX = -margin, minY = -margin, maxX = width + margin, maxY = height + margin;
+        float maxStep = 0.0f;
+        for (int i = 0; i < size; i++) {
+            previousX[i] = x[i];
+            previousY[i] = y[i];
+            x[i] += xSpeed[i] * delta;
+            y[i] += ySpeed[i] * delta;
+            age[i] += delta;
+            maxStep = Math.max(maxStep, Math.max(Math.abs(xSpeed[i]), Math.abs(ySpeed[i])) * delta);
+            
+            if (x[i] < minX || x[i] > maxX || y[i] < minY || y[i] > maxY) {
+                spent[i] = true;
+            }
+        }
+        this.maxStep = maxStep;
+        
+        collide();
+        
+        //remove spent bullets by moving the last bullet into their slot
+        int i = 0;
+        while (i < size) {
+            if (spent[i]) {
+                size--;
+                move(size, i);
+            } else {
+                i++;
+            }
+        }
+    }
+    
+    private void collide() {
+        if (size == 0 || targetCategories.size == 0) {
+            return;
+        }
+        
+        sort();
+        
+        for (int i = 0; i < targetCategories.size; i++) {
+            int category = bulletCategories.get(i);
+            Array<Entity> targets = manager.getEntitiesByCategory(targetCategories.get(i));
+            for (int j = 0; j < targets.size; j++) {
+                Entity target = targets.get(j);
+                if (!target.isDestroyed() && target.isCheckingCollisions() && (target.getCollisionMask() & category) != 0) {
+                    collide(target, category);
+                }
+            }
+        }
+    }
+    
+    private void collide(Entity target, int category) {
+        Rectangle box = target.getCollisionBox();
+        float targetDx = target.getX() - target.getPreviousX();
+        float targetDy = target.getY() - target.getPreviousY();
+        
+        //the box at its current and previous position, grown by anything a bullet could have swept through
+        float grow = radius + maxStep;
+        int column1 = getColumn(box.x - Math.max(targetDx, 0.0f) - grow);
+        int column2 = getColumn(box.x + box.width - Math.min(targetDx, 0.0f) + grow);
+        int row1 = getRow(box.y - Math.max(targetDy, 0.0f) - grow);
+        int row2 = getRow(box.y + box.height - Math.min(targetDy, 0.0f) + grow);
+        
+        for (int row = row1; row <= row2; row++) {
+            for (int column = column1; column <= column2; column++) {
+                int cell = row * columns + column;
+                for (int k = cellStarts[cell], end = cellStarts[cell + 1]; k < end; k++) {
+                    int i = cellBullets[k];
+                    if (!spent[i] && categories[i] == category && hits(target, box, targetDx, targetDy, i) && target.bulletCollision()) {
+                        spent[i] = true;
+                        
+                        if (target.isDestroyed()) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Uses the collision shape of the target when the bullet overlaps its box
+     * and otherwise checks whether the bullet crossed the box during the last
+     * step, so fast bullets can not tunnel through.
+     */
+    private boolean hits(Entity target, Rectangle box, float targetDx, float targetDy, int i) {
+        float bulletX = x[i];
+        float bulletY = y[i];
+        float minX = box.x - radius;
+        float minY = box.y - radius;
+        float maxX = box.x + box.width + radius;
+        float maxY = box.y + box.height + radius;
+        
+        if (bulletX > minX && bulletX < maxX && bulletY > minY && bulletY < maxY) {
+            if (target instanceof SpineTwoColorEntity) {
+                float[] polygon = this.polygon;
+                polygon[0] = bulletX - radius;
+                polygon[1] = bulletY - radius;
+                polygon[2] = bulletX + radius;
+                polygon[3] = bulletY - radius;
+                polygon[4] = bulletX + radius;
+                polygon[5] = bulletY + radius;
+                polygon[6] = bulletX - radius;
+                polygon[7] = bulletY + radius;
+                return ((SpineTwoColorEntity) target).overlapsPolygon(polygon, 0, polygon.length);
+            }
+            return true;
+        }
+        
+        //sweep the bullet center against the grown box using the relative motion
+        float dx = (bulletX - previousX[i]) - targetDx;
+        float dy = (bulletY - previousY[i]) - targetDy;
+        float startX = bulletX - dx;
+        float startY = bulletY - dy;
+        
+        float enter = 0.0f;
+        float exit = 1.0f;
+        
+        if (dx == 0.0f) {
+            if (startX < minX || startX > maxX) {
+                return false;
+            }
+        } else {
+            float t1 = (minX - startX) / dx;
+            float t2 = (maxX - startX) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        if (dy == 0.0f) {
+            if (startY < minY || startY > maxY) {
+                return false;
+            }
+        } else {
+            float t1 = (minY - startY) / dy;
+            float t2 = (maxY - startY) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        return enter <= exit;
+    }
+    
+    /**
+     * Counting sort of the live bullets by grid cell. Afterwards the bullets
+     * of a cell are listed in cellBullets from cellStarts[cell] up to
+     * cellStarts[cell + 1].
+     */
+    private void sort() {
+        int cells = cellStarts.length - 1;
+        Arrays.fill(cellStarts, 0);
+        for (int i = 0; i < size; i++) {
+            if (!spent[i]) {
+                cellStarts[getRow(y[i]) * columns + getColumn(x[i])]++;
+            }
+        }
+        
+        int total = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            total += cellStarts[cell];
+            cellStarts[cell] = total;
+        }
+        cellStarts[cells] = total;
+        
+        for (int i = 0; i < size; i++) {
+            if (!spent[i]) {
+                cellBullets[--cellStarts[getRow(y[i]) * columns + getColumn(x[i])]] = i;
+            }
+        }
+    }
+    
+    private int getColumn(float x) {
+        return MathUtils.clamp((int) ((x + margin) / CELL_SIZE), 0, columns - 1);
+    }
+    
+    private int getRow(float y) {
+        return MathUtils.clamp((int) ((y + margin) / CELL_SIZE), 0, rows - 1);
+    }
+    
+    /**
+     * Draws every bullet inside the view grown by the margin. The batch must
+     * already be started.
+     * @param view The visible area or null to draw every bullet.
+     */
+    public void draw(TwoColorPolygonBatch batch, Rectangle view, float margin) {
+        drawnCount = 0;
+        if (Core.recordingBatch != null) {
+            Core.recordingBatch.setSource(BulletField.class);
+        }
+        
+        for (int i = 0; i < size; i++) {
+            if (view != null && (x[i] < view.x - margin || x[i] > view.x + view.width + margin || y[i] < view.y - margin || y[i] > view.y + view.height + margin)) {
+                continue;
+            }
+            
+            TextureRegion region = flipbook.getFrame(animations.get(animationIndices[i]), age[i]);
+            flipbook.draw(batch, region, x[i], y[i]);
+            drawnCount++;
+        }
+        
+        if (Core.recordingBatch != null) {
+            Core.recordingBatch.setSource(null);
+        }
+    }
+    
+    private void move(int from, int to) {
+        x[to] = x[from];
+        y[to] = y[from];
+        previousX[to] = previousX[from];
+        previousY[to] = previousY[from];
+        xSpeed[to] = xSpeed[from];
+        ySpeed[to] = ySpeed[from];
+        age[to] = age[from];
+        owners[to] = owners[from];
+        categories[to] = categories[from];
+        animationIndices[to] = animationIndices[from];
+        spent[to] = spent[from];
+    }
+    
+    private void resize(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        xSpeed = Arrays.copyOf(xSpeed, capacity);
+        ySpeed = Arrays.copyOf(ySpeed, capacity);
+        age = Arrays.copyOf(age, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        animationIndices = Arrays.copyOf(animationIndices, capacity);
+        spent = Arrays.copyOf(spent, capacity);
+        cellBullets = new int[capacity];
+    }
+    
+    public void clear() {
+        size = 0;
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    public float getX(int index) {
+        return x[index];
+    }
+    
+    public float getY(int index) {
+        return y[index];
+    }
+    
+    public int getCategory(int index) {
+        return categories[index];
+    }
+    
+    /**
+     * Returns the entity that fired the bullet, or null if it has been
+     * removed.
+     */
+    public Entity getOwner(int index) {
+        return manager.resolve(owners[index]);
+    }
+    
+    /**
+     * Returns the number of bullets drawn by the last call to
+     * {@link #draw(TwoColorPolygonBatch, Rectangle, float)}.
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+}
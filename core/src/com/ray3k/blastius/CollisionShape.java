@@ -0,0 +1,233 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.ConvexHull;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.esotericsoftware.spine.Bone;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.Skin;
+import com.esotericsoftware.spine.Slot;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.attachments.BoundingBoxAttachment;
+
+/**
+ * The bounding box attachments of one skin, reduced to convex hulls in the
+ * local space of the bone each one is attached to. A single instance is shared
+ * by every entity using the skin. Entities transform the hulls into their own
+ * vertex buffer with {@link #transform(Skeleton, float[])} and test them
+ * against each other with a separating axis test.
+ */
+public class CollisionShape {
+    private final int[] slots;
+    private final int[] offsets;
+    private final int[] counts;
+    private final float[] vertices;
+    private final float[] extents;
+    
+    /**
+     * Extracts the bounding boxes attached in the setup pose of the skin.
+     */
+    public CollisionShape(SkeletonData skeletonData, Skin skin) {
+        Skeleton skeleton = new Skeleton(skeletonData);
+        skeleton.setSkin(skin);
+        skeleton.setToSetupPose();
+        skeleton.updateWorldTransform();
+        
+        ConvexHull convexHull = new ConvexHull();
+        FloatArray hullVertices = new FloatArray();
+        IntArray hullSlots = new IntArray();
+        IntArray hullOffsets = new IntArray();
+        IntArray hullCounts = new IntArray();
+        
+        Array<Slot> skeletonSlots = skeleton.getSlots();
+        for (int i = 0; i < skeletonSlots.size; i++) {
+            Slot slot = skeletonSlots.get(i);
+            Attachment attachment = slot.getAttachment();
+            if (attachment instanceof BoundingBoxAttachment) {
+                BoundingBoxAttachment boundingBox = (BoundingBoxAttachment) attachment;
+                int count = boundingBox.getWorldVerticesLength();
+                float[] world = new float[count];
+                boundingBox.computeWorldVertices(slot, 0, count, world, 0, 2);
+                
+                //convert the setup pose world vertices back to bone space
+                Bone bone = slot.getBone();
+                float a = bone.getA(), b = bone.getB(), c = bone.getC(), d = bone.getD();
+                float invDet = 1.0f / (a * d - b * c);
+                for (int j = 0; j < count; j += 2) {
+                    float x = world[j] - bone.getWorldX();
+                    float y = world[j + 1] - bone.getWorldY();
+                    world[j] = (x * d - y * b) * invDet;
+                    world[j + 1] = (y * a - x * c) * invDet;
+                }
+                
+                //the hull repeats its first point at the end
+                FloatArray hull = convexHull.computePolygon(world, false);
+                int hullCount = hull.size - 2;
+                if (hullCount < 6) {
+                    continue;
+                }
+                
+                hullSlots.add(i);
+                hullOffsets.add(hullVertices.size);
+                hullCounts.add(hullCount);
+                hullVertices.addAll(hull.items, 0, hullCount);
+            }
+        }
+        
+        slots = hullSlots.toArray();
+        offsets = hullOffsets.toArray();
+        counts = hullCounts.toArray();
+        vertices = hullVertices.toArray();
+        extents = computeExtents(offsets, counts, vertices);
+    }
+    
+    /**
+     * Creates a shape from hulls that are already convex. Used by tests.
+     */
+    CollisionShape(int[] slots, int[] offsets, int[] counts, float[] vertices) {
+        this.slots = slots;
+        this.offsets = offsets;
+        this.counts = counts;
+        this.vertices = vertices;
+        extents = computeExtents(offsets, counts, vertices);
+    }
+    
+    /**
+     * Returns the bone space bounds of each hull as center x, center y, half
+     * width and half height.
+     */
+    private static float[] computeExtents(int[] offsets, int[] counts, float[] vertices) {
+        float[] extents = new float[offsets.length * 4];
+        for (int i = 0; i < offsets.length; i++) {
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (int j = offsets[i], end = offsets[i] + counts[i]; j < end; j += 2) {
+                minX = Math.min(minX, vertices[j]);
+                minY = Math.min(minY, vertices[j + 1]);
+                maxX = Math.max(maxX, vertices[j]);
+                maxY = Math.max(maxY, vertices[j + 1]);
+            }
+            extents[i * 4] = (minX + maxX) / 2.0f;
+            extents[i * 4 + 1] = (minY + maxY) / 2.0f;
+            extents[i * 4 + 2] = (maxX - minX) / 2.0f;
+            extents[i * 4 + 3] = (maxY - minY) / 2.0f;
+        }
+        return extents;
+    }
+    
+    /**
+     * Writes the hulls in world space for the current pose of the skeleton.
+     * The skeleton must use the skin this shape was built from.
+     */
+    public void transform(Skeleton skeleton, float[] worldVertices) {
+        Array<Slot> skeletonSlots = skeleton.getSlots();
+        for (int i = 0; i < slots.length; i++) {
+            Bone bone = skeletonSlots.get(slots[i]).getBone();
+            float a = bone.getA(), b = bone.getB(), c = bone.getC(), d = bone.getD();
+            float worldX = bone.getWorldX(), worldY = bone.getWorldY();
+            for (int j = offsets[i], end = offsets[i] + counts[i]; j < end; j += 2) {
+                float x = vertices[j];
+                float y = vertices[j + 1];
+                worldVertices[j] = a * x + b * y + worldX;
+                worldVertices[j + 1] = c * x + d * y + worldY;
+            }
+        }
+    }
+    
+    /**
+     * Sets the collision box of the entity to the world bounds of the hulls
+     * for the current pose of the skeleton. Each hull's bone space bounds are
+     * transformed by its bone, so no world vertices are computed. Entities
+     * without a shape or hulls get an empty box at their position.
+     */
+    public static void setCollisionBounds(Entity entity, CollisionShape shape, Skeleton skeleton) {
+        if (shape == null || shape.isEmpty()) {
+            entity.setCollisionBounds(entity.getX(), entity.getY(), entity.getX(), entity.getY());
+            return;
+        }
+        
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        Array<Slot> skeletonSlots = skeleton.getSlots();
+        float[] extents = shape.extents;
+        for (int i = 0; i < shape.slots.length; i++) {
+            Bone bone = skeletonSlots.get(shape.slots[i]).getBone();
+            float a = bone.getA(), b = bone.getB(), c = bone.getC(), d = bone.getD();
+            float x = extents[i * 4], y = extents[i * 4 + 1];
+            float halfWidth = extents[i * 4 + 2], halfHeight = extents[i * 4 + 3];
+            float centerX = a * x + b * y + bone.getWorldX();
+            float centerY = c * x + d * y + bone.getWorldY();
+            float worldHalfWidth = Math.abs(a) * halfWidth + Math.abs(b) * halfHeight;
+            float worldHalfHeight = Math.abs(c) * halfWidth + Math.abs(d) * halfHeight;
+            minX = Math.min(minX, centerX - worldHalfWidth);
+            minY = Math.min(minY, centerY - worldHalfHeight);
+            maxX = Math.max(maxX, centerX + worldHalfWidth);
+            maxY = Math.max(maxY, centerY + worldHalfHeight);
+        }
+        entity.setCollisionBounds(minX, minY, maxX, maxY);
+    }
+    
+    /**
+     * Returns true if any hull of the first shape overlaps any hull of the
+     * second. Both vertex buffers must have been filled by
+     * {@link #transform(Skeleton, float[])}.
+     */
+    public static boolean overlaps(CollisionShape shape1, float[] worldVertices1, CollisionShape shape2, float[] worldVertices2) {
+        for (int i = 0; i < shape1.slots.length; i++) {
+            for (int j = 0; j < shape2.slots.length; j++) {
+                if (Intersector.overlapConvexPolygons(worldVertices1, shape1.offsets[i], shape1.counts[i], worldVertices2, shape2.offsets[j], shape2.counts[j], null)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns true if any hull of the shape overlaps the convex polygon stored
+     * in the given range of the polygon array.
+     */
+    public static boolean overlaps(CollisionShape shape, float[] worldVertices, float[] polygon, int offset, int count) {
+        for (int i = 0; i < shape.slots.length; i++) {
+            if (Intersector.overlapConvexPolygons(worldVertices, shape.offsets[i], shape.counts[i], polygon, offset, count, null)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    public boolean isEmpty() {
+        return slots.length == 0;
+    }
+    
+    /**
+     * Returns the number of floats needed for a world vertex buffer.
+     */
+    public int getVertexCount() {
+        return vertices.length;
+    }
+}
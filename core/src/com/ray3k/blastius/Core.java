@@ -67,8 +67,16 @@ public class Core extends ApplicationAdapter {
     public static SkeletonRenderer skeletonRenderer;
     public static PixmapPacker pixmapPacker;
     public static ObjectMap<String, Array<String>> imagePacks;
+    public static ObjectMap<String, Flipbook> flipbooks;
+    public static ObjectMap<String, SkeletonArchetype> archetypes;
+    /**
+     * When set, entities, bullets and flipbooks draw into this batch instead
+     * of their own batches so draws can be counted without a GL context.
+     * Two-color draws are recorded through the sprite batch path.
+     */
+    public static RecordingBatch recordingBatch;
     
-    private final static long MS_PER_UPDATE = 10;
+    public final static long MS_PER_UPDATE = 10;
     private long previous;
     private long lag;
     
@@ -136,6 +144,13 @@ public class Core extends ApplicationAdapter {
         skeletonRenderer.setPremultipliedAlpha(true);
         
         imagePacks = new ObjectMap<String, Array<String>>();
+        
+        archetypes = new ObjectMap<String, SkeletonArchetype>();
+        
+        flipbooks = new ObjectMap<String, Flipbook>();
+        flipbooks.put("blast", new Flipbook("blast", DATA_PATH + "/spine/blast.json", null, 1 / 30.0f));
+        flipbooks.put("coin", new Flipbook("coin", DATA_PATH + "/spine/coin.json", null, 1 / 30.0f));
+        flipbooks.put("tracer", new Flipbook("tracer", DATA_PATH + "/spine/tracer.json", "blue", 1 / 30.0f));
 //        for (String name : new String[] {"run animation", "hit animation", "jump animation", "jump fall animation", "roll animation"}) {
 //            imagePacks.put(DATA_PATH + "/" + name, new Array<String>());
 //        }
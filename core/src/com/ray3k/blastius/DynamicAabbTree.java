@@ -0,0 +1,614 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Bounding volume hierarchy over entity collision boxes. Leaves store a box
+ * grown by a margin so small movements do not change the tree; entities that
+ * leave their grown box are removed and reinserted, and the tree is kept
+ * balanced with rotations. Queries fill caller supplied arrays and reuse an
+ * internal stack, so they must be made from a single thread.
+ */
+public class DynamicAabbTree {
+    private static final int NULL = -1;
+    private static final float MARGIN = 16.0f;
+    private float[] minX;
+    private float[] minY;
+    private float[] maxX;
+    private float[] maxY;
+    private int[] parent;
+    private int[] child1;
+    private int[] child2;
+    private int[] height;
+    private Entity[] entities;
+    private int root;
+    private int nodeCount;
+    private int freeList;
+    private final IntArray stack;
+    private float[] distances;
+    
+    public DynamicAabbTree(int capacity) {
+        root = NULL;
+        freeList = NULL;
+        stack = new IntArray();
+        distances = new float[8];
+        resize(Math.max(1, capacity));
+    }
+    
+    private void resize(int capacity) {
+        int oldCapacity = parent == null ? 0 : parent.length;
+        minX = copy(minX, capacity);
+        minY = copy(minY, capacity);
+        maxX = copy(maxX, capacity);
+        maxY = copy(maxY, capacity);
+        parent = copy(parent, capacity);
+        child1 = copy(child1, capacity);
+        child2 = copy(child2, capacity);
+        height = copy(height, capacity);
+        Entity[] newEntities = new Entity[capacity];
+        if (entities != null) {
+            System.arraycopy(entities, 0, newEntities, 0, entities.length);
+        }
+        entities = newEntities;
+        
+        for (int i = capacity - 1; i >= oldCapacity; i--) {
+            parent[i] = freeList;
+            freeList = i;
+        }
+    }
+    
+    private static float[] copy(float[] array, int capacity) {
+        float[] result = new float[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, array.length);
+        }
+        return result;
+    }
+    
+    private static int[] copy(int[] array, int capacity) {
+        int[] result = new int[capacity];
+        if (array != null) {
+            System.arraycopy(array, 0, result, 0, array.length);
+        }
+        return result;
+    }
+    
+    private int allocateNode() {
+        if (freeList == NULL) {
+            resize(parent.length * 2);
+        }
+        
+        int node = freeList;
+        freeList = parent[node];
+        parent[node] = NULL;
+        child1[node] = NULL;
+        child2[node] = NULL;
+        height[node] = 0;
+        entities[node] = null;
+        nodeCount++;
+        return node;
+    }
+    
+    private void freeNode(int node) {
+        parent[node] = freeList;
+        entities[node] = null;
+        height[node] = -1;
+        freeList = node;
+        nodeCount--;
+    }
+    
+    /**
+     * Inserts the entity with the given box and returns its proxy id.
+     */
+    public int createProxy(Entity entity, Rectangle box) {
+        int proxy = allocateNode();
+        setFatBox(proxy, box);
+        entities[proxy] = entity;
+        insertLeaf(proxy);
+        return proxy;
+    }
+    
+    public void destroyProxy(int proxy) {
+        removeLeaf(proxy);
+        freeNode(proxy);
+    }
+    
+    /**
+     * Updates the proxy for a new box. The tree is only changed if the box
+     * left the grown box stored for the proxy. Returns true if it was changed.
+     */
+    public boolean moveProxy(int proxy, Rectangle box) {
+        if (box.x >= minX[proxy] && box.y >= minY[proxy] && box.x + box.width <= maxX[proxy] && box.y + box.height <= maxY[proxy]) {
+            return false;
+        }
+        
+        removeLeaf(proxy);
+        setFatBox(proxy, box);
+        insertLeaf(proxy);
+        return true;
+    }
+    
+    private void setFatBox(int node, Rectangle box) {
+        minX[node] = box.x - MARGIN;
+        minY[node] = box.y - MARGIN;
+        maxX[node] = box.x + box.width + MARGIN;
+        maxY[node] = box.y + box.height + MARGIN;
+    }
+    
+    private boolean isLeaf(int node) {
+        return child1[node] == NULL;
+    }
+    
+    private float perimeter(int node) {
+        return 2.0f * (maxX[node] - minX[node] + maxY[node] - minY[node]);
+    }
+    
+    private float combinedPerimeter(int node1, int node2) {
+        float width = Math.max(maxX[node1], maxX[node2]) - Math.min(minX[node1], minX[node2]);
+        float height = Math.max(maxY[node1], maxY[node2]) - Math.min(minY[node1], minY[node2]);
+        return 2.0f * (width + height);
+    }
+    
+    private void union(int node, int node1, int node2) {
+        minX[node] = Math.min(minX[node1], minX[node2]);
+        minY[node] = Math.min(minY[node1], minY[node2]);
+        maxX[node] = Math.max(maxX[node1], maxX[node2]);
+        maxY[node] = Math.max(maxY[node1], maxY[node2]);
+    }
+    
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parent[leaf] = NULL;
+            return;
+        }
+        
+        //descend towards the sibling that increases the total perimeter least
+        int index = root;
+        while (!isLeaf(index)) {
+            int left = child1[index];
+            int right = child2[index];
+            
+            float area = perimeter(index);
+            float combinedArea = combinedPerimeter(index, leaf);
+            float cost = 2.0f * combinedArea;
+            float inheritanceCost = 2.0f * (combinedArea - area);
+            
+            float costLeft = combinedPerimeter(leaf, left) + inheritanceCost;
+            if (!isLeaf(left)) {
+                costLeft -= perimeter(left);
+            }
+            
+            float costRight = combinedPerimeter(leaf, right) + inheritanceCost;
+            if (!isLeaf(right)) {
+                costRight -= perimeter(right);
+            }
+            
+            if (cost < costLeft && cost < costRight) {
+                break;
+            }
+            
+            index = costLeft < costRight ? left : right;
+        }
+        
+        int sibling = index;
+        int oldParent = parent[sibling];
+        int newParent = allocateNode();
+        parent[newParent] = oldParent;
+        union(newParent, leaf, sibling);
+        height[newParent] = height[sibling] + 1;
+        
+        if (oldParent != NULL) {
+            if (child1[oldParent] == sibling) {
+                child1[oldParent] = newParent;
+            } else {
+                child2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+        child1[newParent] = sibling;
+        child2[newParent] = leaf;
+        parent[sibling] = newParent;
+        parent[leaf] = newParent;
+        
+        refit(parent[leaf]);
+    }
+    
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        
+        int leafParent = parent[leaf];
+        int grandParent = parent[leafParent];
+        int sibling = child1[leafParent] == leaf ? child2[leafParent] : child1[leafParent];
+        
+        if (grandParent != NULL) {
+            if (child1[grandParent] == leafParent) {
+                child1[grandParent] = sibling;
+            } else {
+                child2[grandParent] = sibling;
+            }
+            parent[sibling] = grandParent;
+            freeNode(leafParent);
+            refit(grandParent);
+        } else {
+            root = sibling;
+            parent[sibling] = NULL;
+            freeNode(leafParent);
+        }
+    }
+    
+    /**
+     * Walks from the node to the root, rebalancing and recomputing heights and
+     * boxes along the way.
+     */
+    private void refit(int index) {
+        while (index != NULL) {
+            index = balance(index);
+            int left = child1[index];
+            int right = child2[index];
+            height[index] = 1 + Math.max(height[left], height[right]);
+            union(index, left, right);
+            index = parent[index];
+        }
+    }
+    
+    /**
+     * Performs a left or right rotation if the node is imbalanced and returns
+     * the new root of the subtree.
+     */
+    private int balance(int a) {
+        if (isLeaf(a) || height[a] < 2) {
+            return a;
+        }
+        
+        int b = child1[a];
+        int c = child2[a];
+        int balance = height[c] - height[b];
+        
+        if (balance > 1) {
+            int f = child1[c];
+            int g = child2[c];
+            
+            child1[c] = a;
+            parent[c] = parent[a];
+            parent[a] = c;
+            replaceChild(parent[c], a, c);
+            
+            if (height[f] > height[g]) {
+                child2[c] = f;
+                child2[a] = g;
+                parent[g] = a;
+                union(a, b, g);
+                union(c, a, f);
+                height[a] = 1 + Math.max(height[b], height[g]);
+                height[c] = 1 + Math.max(height[a], height[f]);
+            } else {
+                child2[c] = g;
+                child2[a] = f;
+                parent[f] = a;
+                union(a, b, f);
+                union(c, a, g);
+                height[a] = 1 + Math.max(height[b], height[f]);
+                height[c] = 1 + Math.max(height[a], height[g]);
+            }
+            return c;
+        }
+        
+        if (balance < -1) {
+            int d = child1[b];
+            int e = child2[b];
+            
+            child1[b] = a;
+            parent[b] = parent[a];
+            parent[a] = b;
+            replaceChild(parent[b], a, b);
+            
+            if (height[d] > height[e]) {
+                child2[b] = d;
+                child1[a] = e;
+                parent[e] = a;
+                union(a, c, e);
+                union(b, a, d);
+                height[a] = 1 + Math.max(height[c], height[e]);
+                height[b] = 1 + Math.max(height[a], height[d]);
+            } else {
+                child2[b] = e;
+                child1[a] = d;
+                parent[d] = a;
+                union(a, c, d);
+                union(b, a, e);
+                height[a] = 1 + Math.max(height[c], height[d]);
+                height[b] = 1 + Math.max(height[a], height[e]);
+            }
+            return b;
+        }
+        
+        return a;
+    }
+    
+    private void replaceChild(int node, int oldChild, int newChild) {
+        if (node == NULL) {
+            root = newChild;
+        } else if (child1[node] == oldChild) {
+            child1[node] = newChild;
+        } else {
+            child2[node] = newChild;
+        }
+    }
+    
+    private static float distanceSquared(float x, float y, float minX, float minY, float maxX, float maxY) {
+        float dx = Math.max(0.0f, Math.max(minX - x, x - maxX));
+        float dy = Math.max(0.0f, Math.max(minY - y, y - maxY));
+        return dx * dx + dy * dy;
+    }
+    
+    private static float distanceSquared(float x, float y, Rectangle box) {
+        return distanceSquared(x, y, box.x, box.y, box.x + box.width, box.y + box.height);
+    }
+    
+    private static boolean accepts(Entity entity, int categoryMask) {
+        return !entity.isDestroyed() && (entity.getCollisionCategory() & categoryMask) != 0;
+    }
+    
+    /**
+     * Replaces the contents of results with every entity matching the category
+     * mask whose collision box is within the radius of the point.
+     */
+    public void queryRadius(float x, float y, float radius, int categoryMask, Array<Entity> results) {
+        results.clear();
+        if (root == NULL) {
+            return;
+        }
+        
+        float radiusSquared = radius * radius;
+        stack.clear();
+        stack.add(root);
+        while (stack.size > 0) {
+            int node = stack.pop();
+            if (distanceSquared(x, y, minX[node], minY[node], maxX[node], maxY[node]) > radiusSquared) {
+                continue;
+            }
+            
+            if (isLeaf(node)) {
+                Entity entity = entities[node];
+                if (accepts(entity, categoryMask) && distanceSquared(x, y, entity.getCollisionBox()) <= radiusSquared) {
+                    results.add(entity);
+                }
+            } else {
+                stack.add(child1[node]);
+                stack.add(child2[node]);
+            }
+        }
+    }
+    
+    /**
+     * Replaces the contents of results with up to count entities matching the
+     * category mask, ordered from the nearest collision box to the point.
+     */
+    public void queryNearest(float x, float y, int count, int categoryMask, Array<Entity> results) {
+        results.clear();
+        if (root == NULL || count <= 0) {
+            return;
+        }
+        
+        if (distances.length < count) {
+            distances = new float[count];
+        }
+        
+        stack.clear();
+        stack.add(root);
+        while (stack.size > 0) {
+            int node = stack.pop();
+            float distance = distanceSquared(x, y, minX[node], minY[node], maxX[node], maxY[node]);
+            if (results.size == count && distance >= distances[count - 1]) {
+                continue;
+            }
+            
+            if (isLeaf(node)) {
+                Entity entity = entities[node];
+                if (!accepts(entity, categoryMask)) {
+                    continue;
+                }
+                
+                distance = distanceSquared(x, y, entity.getCollisionBox());
+                if (results.size == count) {
+                    if (distance >= distances[count - 1]) {
+                        continue;
+                    }
+                    results.pop();
+                }
+                
+                //insertion sort into the results
+                int i = results.size;
+                results.add(entity);
+                while (i > 0 && distances[i - 1] > distance) {
+                    distances[i] = distances[i - 1];
+                    results.set(i, results.get(i - 1));
+                    i--;
+                }
+                distances[i] = distance;
+                results.set(i, entity);
+            } else {
+                //visit the nearer child first
+                int left = child1[node];
+                int right = child2[node];
+                if (distanceSquared(x, y, minX[left], minY[left], maxX[left], maxY[left]) < distanceSquared(x, y, minX[right], minY[right], maxX[right], maxY[right])) {
+                    stack.add(right);
+                    stack.add(left);
+                } else {
+                    stack.add(left);
+                    stack.add(right);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Returns the entity matching the category mask whose collision box is
+     * hit first by the segment, or null if there is none.
+     */
+    public Entity raycast(float x1, float y1, float x2, float y2, int categoryMask) {
+        if (root == NULL) {
+            return null;
+        }
+        
+        float dx = x2 - x1;
+        float dy = y2 - y1;
+        float maxFraction = 1.0f;
+        Entity closest = null;
+        
+        stack.clear();
+        stack.add(root);
+        while (stack.size > 0) {
+            int node = stack.pop();
+            if (segmentFraction(x1, y1, dx, dy, minX[node], minY[node], maxX[node], maxY[node], maxFraction) < 0.0f) {
+                continue;
+            }
+            
+            if (isLeaf(node)) {
+                Entity entity = entities[node];
+                if (accepts(entity, categoryMask)) {
+                    Rectangle box = entity.getCollisionBox();
+                    float fraction = segmentFraction(x1, y1, dx, dy, box.x, box.y, box.x + box.width, box.y + box.height, maxFraction);
+                    if (fraction >= 0.0f) {
+                        maxFraction = fraction;
+                        closest = entity;
+                    }
+                }
+            } else {
+                stack.add(child1[node]);
+                stack.add(child2[node]);
+            }
+        }
+        
+        return closest;
+    }
+    
+    /**
+     * Returns the fraction along the segment at which it enters the box, or -1
+     * if it misses the box before maxFraction.
+     */
+    private static float segmentFraction(float x, float y, float dx, float dy, float minX, float minY, float maxX, float maxY, float maxFraction) {
+        float enter = 0.0f;
+        float exit = maxFraction;
+        
+        if (dx == 0.0f) {
+            if (x < minX || x > maxX) {
+                return -1.0f;
+            }
+        } else {
+            float t1 = (minX - x) / dx;
+            float t2 = (maxX - x) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        if (dy == 0.0f) {
+            if (y < minY || y > maxY) {
+                return -1.0f;
+            }
+        } else {
+            float t1 = (minY - y) / dy;
+            float t2 = (maxY - y) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        return enter <= exit ? enter : -1.0f;
+    }
+    
+    /**
+     * Checks the parent links, heights and boxes of every node below the root
+     * and returns the number of leaves. Used by tests.
+     */
+    int validate() {
+        if (root == NULL) {
+            return 0;
+        }
+        if (parent[root] != NULL) {
+            throw new IllegalStateException("root has a parent");
+        }
+        return validate(root);
+    }
+    
+    private int validate(int node) {
+        if (isLeaf(node)) {
+            if (child2[node] != NULL || height[node] != 0 || entities[node] == null) {
+                throw new IllegalStateException("malformed leaf " + node);
+            }
+            if (!contains(node, entities[node].getCollisionBox())) {
+                throw new IllegalStateException("leaf " + node + " does not contain its entity's box");
+            }
+            return 1;
+        }
+        
+        int left = child1[node];
+        int right = child2[node];
+        if (parent[left] != node || parent[right] != node) {
+            throw new IllegalStateException("broken parent link below " + node);
+        }
+        if (height[node] != 1 + Math.max(height[left], height[right])) {
+            throw new IllegalStateException("wrong height at " + node);
+        }
+        if (minX[node] != Math.min(minX[left], minX[right]) || minY[node] != Math.min(minY[left], minY[right])
+                || maxX[node] != Math.max(maxX[left], maxX[right]) || maxY[node] != Math.max(maxY[left], maxY[right])) {
+            throw new IllegalStateException("box of " + node + " is not the union of its children");
+        }
+        return validate(left) + validate(right);
+    }
+    
+    private boolean contains(int node, Rectangle box) {
+        return box.x >= minX[node] && box.y >= minY[node] && box.x + box.width <= maxX[node] && box.y + box.height <= maxY[node];
+    }
+    
+    /**
+     * Returns the largest height difference between the children of any node.
+     * Used by tests.
+     */
+    int getMaxBalance() {
+        int maxBalance = 0;
+        for (int node = 0; node < height.length; node++) {
+            if (height[node] > 0) {
+                maxBalance = Math.max(maxBalance, Math.abs(height[child2[node]] - height[child1[node]]));
+            }
+        }
+        return maxBalance;
+    }
+    
+    public int getNodeCount() {
+        return nodeCount;
+    }
+    
+    public int getHeight() {
+        return root == NULL ? 0 : height[root];
+    }
+}
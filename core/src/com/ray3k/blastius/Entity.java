@@ -23,13 +23,16 @@
  */
 package com.ray3k.blastius;
 
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
+import com.esotericsoftware.spine.BlendMode;
 
 public abstract class Entity {
     private static final Vector2 temp = new Vector2();
     private final Vector2 position;
+    private final Vector2 previousPosition;
     private final Vector2 speed;
     private boolean destroyed;
     private final Vector2 gravity;
@@ -38,9 +41,24 @@ public abstract class Entity {
     private final Vector2 collisionBoxPosition;
     private boolean checkingCollisions;
     private boolean persistent;
+    private int collisionCategory;
+    private int collisionMask;
+    private float despawnMargin;
+    EntityManager manager;
+    int indexPosition;
+    int listPosition;
+    int depthPosition;
+    int id;
+    long handle;
+    boolean culled;
+    EntityPool<?> pool;
+    KinematicsStore kinematics;
+    int slot;
+    int treeProxy;
 
     public Entity() {
         position = new Vector2();
+        previousPosition = new Vector2();
         speed = new Vector2();
         gravity = new Vector2();
         depth = 0;
@@ -51,10 +69,21 @@ public abstract class Entity {
         collisionBoxPosition.y = 0;
         checkingCollisions = false;
         persistent = false;
+        collisionCategory = ~0;
+        collisionMask = ~0;
+        despawnMargin = -1.0f;
     }
     
     public abstract void create();
     
+    /**
+     * Called for every entity before any entity acts. Implementations may only
+     * touch state owned by this entity because poses can be updated in
+     * parallel.
+     */
+    public void updatePose(float delta) {
+    }
+    
     public abstract void act(float delta);
     
     public abstract void actEnd(float delta);
@@ -63,29 +92,117 @@ public abstract class Entity {
     
     public abstract void destroy();
     
+    /**
+     * Returns the batch the entity draws with, either
+     * {@link RenderQueue#SPRITE_BATCH} or {@link RenderQueue#TWO_COLOR_BATCH}.
+     */
+    public int getBatchType() {
+        return RenderQueue.SPRITE_BATCH;
+    }
+    
+    /**
+     * Returns the texture the entity will draw with, or null if it draws
+     * nothing or the texture is not known in advance.
+     */
+    public Texture getTexture() {
+        return null;
+    }
+    
+    /**
+     * Returns the ordinal of the Spine blend mode the entity draws with, or
+     * {@link RenderQueue#MIXED_BLEND} if it switches blend modes while
+     * drawing.
+     */
+    public int getBlendMode() {
+        return BlendMode.normal.ordinal();
+    }
+    
     public abstract void collision(Entity other);
     
+    /**
+     * Called by a {@link BulletField} when one of its bullets hits the entity.
+     * Return true to remove the bullet.
+     */
+    public boolean bulletCollision() {
+        return false;
+    }
+    
     public void dispose() {
         if (!destroyed) {
             destroyed = true;
             destroy();
+            
+            if (manager != null) {
+                manager.removeEntity(this);
+            }
         }
     }
+    
+    /**
+     * Called when a pooled entity is returned to its pool. Clears the state
+     * accumulated while the entity was alive so it can be added again.
+     */
+    public void reset() {
+        detach();
+        position.setZero();
+        previousPosition.setZero();
+        speed.setZero();
+        culled = false;
+        gravity.setZero();
+        destroyed = false;
+    }
+    
+    /**
+     * Returns an id that is unique for each time the entity is added to an
+     * EntityManager. Pooled entities receive a new id every time they are
+     * reused.
+     */
+    public int getId() {
+        return id;
+    }
+    
+    /**
+     * Returns the handle of the entity in its EntityManager's arena, or 0 if
+     * the entity has not been added. Unlike a reference, a handle can be
+     * stored indefinitely and resolves to null once the entity is removed.
+     * See {@link EntityManager#resolve(long)}.
+     */
+    public long getHandle() {
+        return handle;
+    }
 
     public Vector2 getPosition() {
-        return position.cpy();
+        return new Vector2(getX(), getY());
     }
     
     public float getX() {
-        return position.x;
+        return kinematics == null ? position.x : kinematics.x[slot];
     }
     
     public float getY() {
-        return position.y;
+        return kinematics == null ? position.y : kinematics.y[slot];
+    }
+    
+    /**
+     * Returns the x position before the last integration step.
+     */
+    public float getPreviousX() {
+        return kinematics == null ? previousPosition.x : kinematics.previousX[slot];
+    }
+    
+    /**
+     * Returns the y position before the last integration step.
+     */
+    public float getPreviousY() {
+        return kinematics == null ? previousPosition.y : kinematics.previousY[slot];
+    }
+    
+    void storePreviousPosition() {
+        previousPosition.set(position);
     }
     
     public void setPosition(Vector2 position) {
-        this.position.set(position);
+        setPosition(position.x, position.y);
     }
     
     public void setPosition(float x, float y) {
@@ -94,66 +211,86 @@ public abstract class Entity {
     }
     
     public void setX(float x) {
-        this.position.x = x;
+        if (kinematics == null) {
+            this.position.x = x;
+        } else {
+            kinematics.x[slot] = x;
+        }
     }
     
     public void setY(float y) {
-        this.position.y = y;
+        if (kinematics == null) {
+            this.position.y = y;
+        } else {
+            kinematics.y[slot] = y;
+        }
     }
     
     public void addX(float x) {
-        this.position.x += x;
+        setX(getX() + x);
     }
     
     public void addY(float y) {
-        this.position.y += y;
+        setY(getY() + y);
     }
 
     public float getSpeed() {
-        return speed.len();
+        return Vector2.len(getXspeed(), getYspeed());
     }
     
     public float getXspeed() {
-        return speed.x;
+        return kinematics == null ? speed.x : kinematics.xSpeed[slot];
     }
     
     public float getYspeed() {
-        return speed.y;
+        return kinematics == null ? speed.y : kinematics.ySpeed[slot];
     }
     
     public void setSpeed(Vector2 speed) {
-        this.speed.set(speed);
+        setXspeed(speed.x);
+        setYspeed(speed.y);
     }
     
     public void setXspeed(float x) {
-        this.speed.x = x;
+        if (kinematics == null) {
+            this.speed.x = x;
+        } else {
+            kinematics.xSpeed[slot] = x;
+        }
     }
     
     public void setYspeed(float y) {
-        this.speed.y = y;
+        if (kinematics == null) {
+            this.speed.y = y;
+        } else {
+            kinematics.ySpeed[slot] = y;
+        }
     }
     
     public void addXspeed(float x) {
-        this.speed.x += x;
+        setXspeed(getXspeed() + x);
     }
     
     public void addYspeed(float y) {
-        this.speed.y += y;
+        setYspeed(getYspeed() + y);
     }
     
     public void setMotion(float speed, float direction) {
-        this.speed.set(speed, 0);
-        this.speed.rotate(direction);
+        temp.set(speed, 0);
+        temp.rotate(direction);
+        setXspeed(temp.x);
+        setYspeed(temp.y);
     }
     
     public void addMotion(float speed, float direction) {
         temp.set(speed, 0);
         temp.rotate(direction);
-        this.speed.add(temp);
+        addXspeed(temp.x);
+        addYspeed(temp.y);
     }
     
     public float getDirection() {
-        return this.speed.angle();
+        return temp.set(getXspeed(), getYspeed()).angle();
     }
 
     public boolean isDestroyed() {
@@ -161,28 +298,62 @@ public abstract class Entity {
     }
     
     public void setGravityX(float gravityX) {
-        gravity.x = gravityX;
+        if (kinematics == null) {
+            gravity.x = gravityX;
+        } else {
+            kinematics.xGravity[slot] = gravityX;
+        }
     }
     
     public void setGravityY(float gravityY) {
-        gravity.y = gravityY;
+        if (kinematics == null) {
+            gravity.y = gravityY;
+        } else {
+            kinematics.yGravity[slot] = gravityY;
+        }
     }
     
     public void setGravity(float speed, float direction) {
-        gravity.set(speed, 0);
-        gravity.rotate(direction);
+        temp.set(speed, 0);
+        temp.rotate(direction);
+        setGravityX(temp.x);
+        setGravityY(temp.y);
     }
     
     public float getGravityX() {
-        return gravity.x;
+        return kinematics == null ? gravity.x : kinematics.xGravity[slot];
     }
     
     public float getGravityY() {
-        return gravity.y;
+        return kinematics == null ? gravity.y : kinematics.yGravity[slot];
     }
     
     public Vector2 getGravity() {
-        return gravity.cpy();
+        return new Vector2(getGravityX(), getGravityY());
+    }
+    
+    void attach(KinematicsStore kinematics) {
+        slot = kinematics.allocate();
+        kinematics.x[slot] = position.x;
+        kinematics.y[slot] = position.y;
+        kinematics.previousX[slot] = previousPosition.x;
+        kinematics.previousY[slot] = previousPosition.y;
+        kinematics.xSpeed[slot] = speed.x;
+        kinematics.ySpeed[slot] = speed.y;
+        kinematics.xGravity[slot] = gravity.x;
+        kinematics.yGravity[slot] = gravity.y;
+        this.kinematics = kinematics;
+    }
+    
+    void detach() {
+        if (kinematics != null) {
+            position.set(kinematics.x[slot], kinematics.y[slot]);
+            previousPosition.set(kinematics.previousX[slot], kinematics.previousY[slot]);
+            speed.set(kinematics.xSpeed[slot], kinematics.ySpeed[slot]);
+            gravity.set(kinematics.xGravity[slot], kinematics.yGravity[slot]);
+            kinematics.free(slot);
+            kinematics = null;
+        }
     }
 
     public int getDepth() {
@@ -190,7 +361,15 @@ public abstract class Entity {
     }
 
     public void setDepth(int depth) {
+        if (manager != null) {
+            manager.renderQueue.remove(this);
+        }
+        
         this.depth = depth;
+        
+        if (manager != null) {
+            manager.renderQueue.add(this);
+        }
     }
 
     public Rectangle getCollisionBox() {
@@ -221,6 +400,115 @@ public abstract class Entity {
         return collisionBoxPosition.y;
     }
     
+    /**
+     * Sets the collision box to the given world coordinates and stores its
+     * offset from the entity position.
+     */
+    public void setCollisionBounds(float minX, float minY, float maxX, float maxY) {
+        collisionBoxPosition.set(minX - getX(), minY - getY());
+        collisionBox.set(minX, minY, maxX - minX, maxY - minY);
+    }
+    
+    public int getCollisionCategory() {
+        return collisionCategory;
+    }
+
+    public void setCollisionCategory(int collisionCategory) {
+        if (manager != null) {
+            manager.unindex(this);
+        }
+        
+        this.collisionCategory = collisionCategory;
+        
+        if (manager != null) {
+            manager.index(this);
+        }
+    }
+
+    public int getCollisionMask() {
+        return collisionMask;
+    }
+
+    public void setCollisionMask(int collisionMask) {
+        this.collisionMask = collisionMask;
+    }
+    
+    public boolean canCollideWith(Entity other) {
+        return (collisionMask & other.collisionCategory) != 0;
+    }
+    
+    /**
+     * Tests whether the collision boxes met at any point during the last
+     * integration step. The motion of both entities is treated as linear from
+     * their previous to their current position, so fast entities can not pass
+     * through each other between ticks.
+     */
+    public boolean overlapsSwept(Entity other) {
+        Rectangle box = collisionBox;
+        Rectangle otherBox = other.collisionBox;
+        if (box.overlaps(otherBox)) {
+            return true;
+        }
+        
+        //sweep this box's center against the other box grown by this box's size
+        float dx = (getX() - getPreviousX()) - (other.getX() - other.getPreviousX());
+        float dy = (getY() - getPreviousY()) - (other.getY() - other.getPreviousY());
+        float startX = box.x + box.width / 2.0f - dx;
+        float startY = box.y + box.height / 2.0f - dy;
+        float minX = otherBox.x - box.width / 2.0f;
+        float maxX = otherBox.x + otherBox.width + box.width / 2.0f;
+        float minY = otherBox.y - box.height / 2.0f;
+        float maxY = otherBox.y + otherBox.height + box.height / 2.0f;
+        
+        float enter = 0.0f;
+        float exit = 1.0f;
+        
+        if (dx == 0.0f) {
+            if (startX < minX || startX > maxX) {
+                return false;
+            }
+        } else {
+            float t1 = (minX - startX) / dx;
+            float t2 = (maxX - startX) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        if (dy == 0.0f) {
+            if (startY < minY || startY > maxY) {
+                return false;
+            }
+        } else {
+            float t1 = (minY - startY) / dy;
+            float t2 = (maxY - startY) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        
+        return enter <= exit;
+    }
+    
+    /**
+     * Returns true if the entity was outside of the view the last time its
+     * EntityManager was drawn.
+     */
+    public boolean isCulled() {
+        return culled;
+    }
+    
+    public float getDespawnMargin() {
+        return despawnMargin;
+    }
+
+    /**
+     * Sets how far outside of the EntityManager's bounds the entity may travel
+     * before it is disposed. The entity is only disposed while it is not moving
+     * back towards the bounds. A negative margin disables despawning.
+     */
+    public void setDespawnMargin(float despawnMargin) {
+        this.despawnMargin = despawnMargin;
+    }
+    
     public Core getCore() {
         return Core.instance;
     }
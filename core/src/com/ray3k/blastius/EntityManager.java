@@ -25,80 +25,556 @@
 package com.ray3k.blastius;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Array;
-import java.util.Comparator;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.LongMap;
 import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class EntityManager {
     private final Array<Entity> entities;
+    private final Array<Entity> pendingAdditions;
+    private final Array<Entity> pendingRemovals;
+    private final SpatialHash spatialHash;
+    private final IntArray collisionCandidates;
+    private final IntMap<Array<Entity>> categoryIndices;
+    private final LongMap<CollisionHandler> collisionHandlers;
+    private final Rectangle sweptBox;
+    private final float width;
+    private final float height;
+    private Rectangle viewBounds;
+    private float cullMargin;
+    final RenderQueue renderQueue;
+    private final KinematicsStore kinematics;
+    private DynamicAabbTree spatialTree;
+    private boolean usingKinematicsStore;
+    private boolean usingSpatialHash;
+    private int nextId;
+    private Entity[] arena;
+    private int[] generations;
+    private int arenaSize;
+    private final IntArray freeSlots;
+    private int tick;
+    private int parallelThreshold;
+    private static ForkJoinPool forkJoinPool;
+    private static final int POSE_BATCH_SIZE = 32;
+    private static final float CELL_SIZE = 64.0f;
     
-    public EntityManager() {
-        entities = new Array<Entity>();
+    public EntityManager(float width, float height) {
+        this.width = width;
+        this.height = height;
+        cullMargin = 16.0f;
+        entities = new Array<Entity>(Entity.class);
+        pendingAdditions = new Array<Entity>();
+        pendingRemovals = new Array<Entity>();
+        spatialHash = new SpatialHash(width, height, CELL_SIZE);
+        collisionCandidates = new IntArray();
+        categoryIndices = new IntMap<Array<Entity>>();
+        collisionHandlers = new LongMap<CollisionHandler>();
+        sweptBox = new Rectangle();
+        renderQueue = new RenderQueue();
+        kinematics = new KinematicsStore(512);
+        arena = new Entity[512];
+        generations = new int[512];
+        freeSlots = new IntArray();
+        usingKinematicsStore = true;
+        parallelThreshold = 200;
+        usingSpatialHash = true;
     }
     
+    /**
+     * Stages the entity to be added. Entities are inserted into the manager at
+     * the start of the next tick, so an entity added during act is not drawn
+     * before it has been posed and has acted. The entity's handle is valid
+     * immediately.
+     */
     public void addEntity(Entity entity) {
-        entities.add(entity);
+        pendingAdditions.add(entity);
+        entity.id = ++nextId;
+        entity.handle = allocateHandle(entity);
         entity.create();
     }
     
+    /**
+     * Places the entity in a free arena slot. The handle holds the slot in its
+     * low 32 bits and the slot's generation in its high 32 bits. Generations
+     * start at 1, so 0 is never a valid handle.
+     */
+    private long allocateHandle(Entity entity) {
+        int slot;
+        if (freeSlots.size > 0) {
+            slot = freeSlots.pop();
+        } else {
+            if (arenaSize == arena.length) {
+                Entity[] newArena = new Entity[arenaSize * 2];
+                System.arraycopy(arena, 0, newArena, 0, arenaSize);
+                arena = newArena;
+                int[] newGenerations = new int[arenaSize * 2];
+                System.arraycopy(generations, 0, newGenerations, 0, arenaSize);
+                generations = newGenerations;
+            }
+            slot = arenaSize++;
+            generations[slot] = 1;
+        }
+        
+        arena[slot] = entity;
+        return (long) generations[slot] << 32 | slot;
+    }
+    
+    /**
+     * Empties the entity's arena slot and advances the slot's generation so
+     * existing handles to it no longer resolve.
+     */
+    private void freeHandle(Entity entity) {
+        int slot = (int) entity.handle;
+        arena[slot] = null;
+        generations[slot]++;
+        if (generations[slot] == 0) {
+            generations[slot] = 1;
+        }
+        freeSlots.add(slot);
+        entity.handle = 0;
+    }
+    
+    /**
+     * Returns the entity the handle was given to, or null if that entity has
+     * since been removed from the manager.
+     */
+    public Entity resolve(long handle) {
+        int slot = (int) handle;
+        if (slot < 0 || slot >= arenaSize || generations[slot] != (int) (handle >>> 32)) {
+            return null;
+        }
+        return arena[slot];
+    }
+    
+    void removeEntity(Entity entity) {
+        pendingRemovals.add(entity);
+    }
+    
+    /**
+     * Inserts all staged entities. Entities destroyed before they were
+     * inserted are freed instead.
+     */
+    private void applyAdditions() {
+        for (int i = 0; i < pendingAdditions.size; i++) {
+            Entity entity = pendingAdditions.get(i);
+            if (entity.isDestroyed()) {
+                free(entity);
+            } else {
+                entity.manager = this;
+                entity.listPosition = entities.size;
+                entities.add(entity);
+                index(entity);
+                renderQueue.add(entity);
+                if (spatialTree != null) {
+                    entity.treeProxy = spatialTree.createProxy(entity, entity.getCollisionBox());
+                }
+                if (usingKinematicsStore) {
+                    entity.attach(kinematics);
+                }
+            }
+        }
+        pendingAdditions.clear();
+    }
+    
+    /**
+     * Removes all staged entities. Removed entities are swapped with the last
+     * entity instead of shifting the array.
+     */
+    private void applyRemovals() {
+        for (int i = 0; i < pendingRemovals.size; i++) {
+            Entity entity = pendingRemovals.get(i);
+            Entity last = entities.pop();
+            if (last != entity) {
+                entities.set(entity.listPosition, last);
+                last.listPosition = entity.listPosition;
+            }
+            unindex(entity);
+            renderQueue.remove(entity);
+            if (spatialTree != null) {
+                spatialTree.destroyProxy(entity.treeProxy);
+            }
+            entity.detach();
+            entity.manager = null;
+            free(entity);
+        }
+        pendingRemovals.clear();
+    }
+    
+    private void free(Entity entity) {
+        freeHandle(entity);
+        if (entity.pool != null) {
+            entity.pool.release(entity);
+        }
+    }
+    
     public Array<Entity> getEntities() {
         return new Array<Entity>(entities);
     }
     
+    /**
+     * Returns the live index of entities with exactly the given collision
+     * category. The array is owned by the EntityManager and must not be
+     * modified. Iterate it by index; destroyed entities remain in it until
+     * they are removed at the next act.
+     */
+    public Array<Entity> getEntitiesByCategory(int category) {
+        Array<Entity> index = categoryIndices.get(category);
+        if (index == null) {
+            index = new Array<Entity>();
+            categoryIndices.put(category, index);
+        }
+        return index;
+    }
+    
+    void index(Entity entity) {
+        Array<Entity> index = getEntitiesByCategory(entity.getCollisionCategory());
+        entity.indexPosition = index.size;
+        index.add(entity);
+    }
+    
+    void unindex(Entity entity) {
+        Array<Entity> index = getEntitiesByCategory(entity.getCollisionCategory());
+        Entity last = index.pop();
+        if (last != entity) {
+            index.set(entity.indexPosition, last);
+            last.indexPosition = entity.indexPosition;
+        }
+    }
+    
     public void act(float delta) {
-        Iterator<Entity> iter = entities.iterator();
-        while (iter.hasNext()) {
-            Entity entity = iter.next();
-            if (!entity.isDestroyed()) {
+        tick++;
+        applyAdditions();
+        applyRemovals();
+        
+        if (usingKinematicsStore) {
+            kinematics.integrate(delta);
+        } else {
+            for (int i = 0; i < entities.size; i++) {
+                Entity entity = entities.get(i);
+                entity.storePreviousPosition();
                 entity.addXspeed(entity.getGravityX() * delta);
                 entity.addYspeed(entity.getGravityY() * delta);
-                
+
                 entity.addX(entity.getXspeed() * delta);
                 entity.addY(entity.getYspeed() * delta);
-                
-                entity.getCollisionBox().setPosition(entity.getX() + entity.getCollisionBoxX(), entity.getY() + entity.getCollisionBoxY());
+            }
+        }
+        
+        despawn();
+        
+        if (parallelThreshold > 0 && entities.size >= parallelThreshold) {
+            if (forkJoinPool == null) {
+                forkJoinPool = new ForkJoinPool();
+            }
+            forkJoinPool.invoke(new PoseTask(entities.items, 0, entities.size, delta));
+        } else {
+            for (int i = 0; i < entities.size; i++) {
+                updatePose(entities.get(i), delta);
+            }
+        }
+        
+        if (spatialTree != null) {
+            for (int i = 0; i < entities.size; i++) {
+                Entity entity = entities.get(i);
+                spatialTree.moveProxy(entity.treeProxy, entity.getCollisionBox());
+            }
+        }
+        
+        for (int i = 0; i < entities.size; i++) {
+            Entity entity = entities.get(i);
+            if (!entity.isDestroyed()) {
                 entity.act(delta);
-                
-                for (int i = 0; i < entities.size ; i++) {
-                    if (!entity.isDestroyed() && entity.isCheckingCollisions()) {
-                        Entity other = entities.get(i);
-                        if (other.isCheckingCollisions()) {
-                            if (entity.getCollisionBox().overlaps(other.getCollisionBox())) {
-                                entity.collision(other);
-                            }
-                        }
+            }
+        }
+        
+        if (usingSpatialHash) {
+            checkCollisionsSpatialHash();
+        } else {
+            checkCollisionsBruteForce();
+        }
+        
+        for (int i = 0; i < entities.size; i++) {
+            entities.get(i).actEnd(delta);
+        }
+        
+        applyRemovals();
+    }
+    
+    /**
+     * Disposes entities that are further outside of the bounds than their
+     * despawn margin and not moving back towards them.
+     */
+    private void despawn() {
+        for (int i = 0; i < entities.size; i++) {
+            Entity entity = entities.get(i);
+            float margin = entity.getDespawnMargin();
+            if (margin < 0.0f || entity.isDestroyed()) {
+                continue;
+            }
+            
+            float x = entity.getX();
+            float y = entity.getY();
+            if (x < -margin && entity.getXspeed() <= 0.0f || x > width + margin && entity.getXspeed() >= 0.0f
+                    || y < -margin && entity.getYspeed() <= 0.0f || y > height + margin && entity.getYspeed() >= 0.0f) {
+                entity.dispose();
+            }
+        }
+    }
+    
+    private static void updatePose(Entity entity, float delta) {
+        entity.updatePose(delta);
+        entity.getCollisionBox().setPosition(entity.getX() + entity.getCollisionBoxX(), entity.getY() + entity.getCollisionBoxY());
+    }
+    
+    private void checkCollisionsBruteForce() {
+        for (int i = 0; i < entities.size; i++) {
+            Entity entity = entities.get(i);
+            for (int j = i + 1; j < entities.size; j++) {
+                if (!entity.isDestroyed() && entity.isCheckingCollisions()) {
+                    checkPair(entity, entities.get(j));
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Inserts each colliding entity into the hash with the box it swept over
+     * the last step, then tests each candidate pair once from the entity with
+     * the lower index.
+     */
+    private void checkCollisionsSpatialHash() {
+        spatialHash.clear();
+        for (int i = 0; i < entities.size; i++) {
+            Entity entity = entities.get(i);
+            if (entity.isCheckingCollisions()) {
+                spatialHash.insert(i, sweptBox(entity));
+            }
+        }
+        
+        for (int i = 0; i < entities.size; i++) {
+            Entity entity = entities.get(i);
+            if (!entity.isDestroyed() && entity.isCheckingCollisions()) {
+                spatialHash.query(sweptBox(entity), collisionCandidates);
+                for (int j = 0; j < collisionCandidates.size; j++) {
+                    int index = collisionCandidates.get(j);
+                    if (index <= i) {
+                        continue;
+                    }
+                    
+                    if (!entity.isDestroyed()) {
+                        checkPair(entity, entities.get(index));
                     } else {
                         break;
                     }
                 }
-            } else {
-                iter.remove();
             }
         }
-        
-        iter = entities.iterator();
-        while (iter.hasNext()) {
-            Entity entity = iter.next();
+    }
+    
+    private Rectangle sweptBox(Entity entity) {
+        Rectangle box = entity.getCollisionBox();
+        float dx = entity.getX() - entity.getPreviousX();
+        float dy = entity.getY() - entity.getPreviousY();
+        return sweptBox.set(box.x - Math.max(dx, 0.0f), box.y - Math.max(dy, 0.0f), box.width + Math.abs(dx), box.height + Math.abs(dy));
+    }
+    
+    private void checkPair(Entity entity, Entity other) {
+        if (!other.isDestroyed() && other.isCheckingCollisions() && (entity.canCollideWith(other) || other.canCollideWith(entity))) {
+            if (entity.overlapsSwept(other)) {
+                CollisionHandler handler = collisionHandlers.get(pairKey(entity.getCollisionCategory(), other.getCollisionCategory()), DEFAULT_COLLISION_HANDLER);
+                handler.collision(entity, other);
+            }
+        }
+    }
+    
+    private static long pairKey(int category, int otherCategory) {
+        return (long) category << 32 | otherCategory & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Routes overlapping pairs of the two categories to the handler instead of
+     * the default dispatch. The handler always receives the entity of
+     * categoryA first. Pass null to restore the default.
+     */
+    public void setCollisionHandler(int categoryA, int categoryB, final CollisionHandler handler) {
+        if (handler == null) {
+            collisionHandlers.remove(pairKey(categoryA, categoryB));
+            collisionHandlers.remove(pairKey(categoryB, categoryA));
+        } else {
+            collisionHandlers.put(pairKey(categoryA, categoryB), handler);
+            if (categoryA != categoryB) {
+                collisionHandlers.put(pairKey(categoryB, categoryA), new CollisionHandler() {
+                    @Override
+                    public void collision(Entity first, Entity second) {
+                        handler.collision(second, first);
+                    }
+                });
+            }
+        }
+    }
+    
+    /**
+     * Handles an overlapping pair of entities. Each pair is reported once per
+     * tick.
+     */
+    public static interface CollisionHandler {
+        public void collision(Entity first, Entity second);
+    }
+    
+    /**
+     * Calls Entity.collision on each entity of the pair whose collision mask
+     * accepts the other.
+     */
+    public static final CollisionHandler DEFAULT_COLLISION_HANDLER = new CollisionHandler() {
+        @Override
+        public void collision(Entity first, Entity second) {
+            if (first.canCollideWith(second)) {
+                first.collision(second);
+            }
             
-            entity.actEnd(delta);
+            if (!second.isDestroyed() && second.canCollideWith(first)) {
+                second.collision(first);
+            }
+        }
+    };
+    
+    /**
+     * Returns the tree used for spatial queries, building it from the current
+     * entities on first use. Until then no tree is maintained.
+     */
+    private DynamicAabbTree getSpatialTree() {
+        if (spatialTree == null) {
+            spatialTree = new DynamicAabbTree(entities.size * 2);
+            for (int i = 0; i < entities.size; i++) {
+                Entity entity = entities.get(i);
+                entity.treeProxy = spatialTree.createProxy(entity, entity.getCollisionBox());
+            }
         }
+        return spatialTree;
+    }
+    
+    /**
+     * Replaces the contents of results with every entity in one of the masked
+     * collision categories whose collision box lies within the radius of the
+     * point. Only call this from the serial act phase.
+     */
+    public void queryRadius(float x, float y, float radius, int categoryMask, Array<Entity> results) {
+        getSpatialTree().queryRadius(x, y, radius, categoryMask, results);
+    }
+    
+    /**
+     * Replaces the contents of results with up to count entities in one of the
+     * masked collision categories, nearest first. Only call this from the
+     * serial act phase.
+     */
+    public void queryNearest(float x, float y, int count, int categoryMask, Array<Entity> results) {
+        getSpatialTree().queryNearest(x, y, count, categoryMask, results);
+    }
+    
+    /**
+     * Returns the first entity in one of the masked collision categories hit
+     * by the segment, or null. Only call this from the serial act phase.
+     */
+    public Entity raycast(float x1, float y1, float x2, float y2, int categoryMask) {
+        return getSpatialTree().raycast(x1, y1, x2, y2, categoryMask);
     }
     
     public void draw(SpriteBatch spriteBatch, float delta) {
-        entities.sort(new Comparator<Entity>() {
-            @Override
-            public int compare(Entity o1, Entity o2) {
-                return o2.getDepth() - o1.getDepth();
-            }
-        });
-        
-        for (Entity entity : entities) {
-            if (!entity.isDestroyed()) {
-                entity.draw(spriteBatch, delta);
+        renderQueue.draw(spriteBatch, delta, viewBounds, cullMargin);
+    }
+    
+    public Rectangle getViewBounds() {
+        return viewBounds;
+    }
+
+    /**
+     * Sets the visible area used to cull entities when drawing. The rectangle
+     * is kept and read on every draw. Set to null to draw every entity.
+     */
+    public void setViewBounds(Rectangle viewBounds) {
+        this.viewBounds = viewBounds;
+    }
+
+    public float getCullMargin() {
+        return cullMargin;
+    }
+
+    /**
+     * Sets how far outside of the view bounds an entity's collision box may
+     * lie and still be drawn, covering artwork that extends past the box.
+     */
+    public void setCullMargin(float cullMargin) {
+        this.cullMargin = cullMargin;
+    }
+    
+    public int getDrawnCount() {
+        return renderQueue.getDrawnCount();
+    }
+    
+    public int getCulledCount() {
+        return renderQueue.getCulledCount();
+    }
+    
+    /**
+     * Returns the number of batch flushes the draw order of the last frame
+     * required.
+     */
+    public int getFlushCount() {
+        return renderQueue.getFlushCount();
+    }
+    
+    /**
+     * Returns the number of times act has been called.
+     */
+    public int getTick() {
+        return tick;
+    }
+    
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the number of entities at which pose updates are split across a
+     * ForkJoinPool. Smaller scenes update poses on the calling thread. A value
+     * of 0 or less disables the parallel phase.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+    
+    public boolean isUsingKinematicsStore() {
+        return usingKinematicsStore;
+    }
+
+    public void setUsingKinematicsStore(boolean usingKinematicsStore) {
+        if (this.usingKinematicsStore != usingKinematicsStore) {
+            this.usingKinematicsStore = usingKinematicsStore;
+            for (int i = 0; i < entities.size; i++) {
+                if (usingKinematicsStore) {
+                    entities.get(i).attach(kinematics);
+                } else {
+                    entities.get(i).detach();
+                }
             }
         }
     }
     
+    public boolean isUsingSpatialHash() {
+        return usingSpatialHash;
+    }
+
+    public void setUsingSpatialHash(boolean usingSpatialHash) {
+        this.usingSpatialHash = usingSpatialHash;
+    }
+    
     public void clear(boolean clearPersistent) {
         Iterator<Entity> iter = getEntities().iterator();
         
@@ -108,9 +584,43 @@ public class EntityManager {
                 entity.dispose();
             }
         }
+        
+        for (int i = 0; i < pendingAdditions.size; i++) {
+            Entity entity = pendingAdditions.get(i);
+            if (clearPersistent || !entity.isPersistent()) {
+                entity.dispose();
+            }
+        }
     }
     
     public void clear() {
         clear(false);
     }
+    
+    private static class PoseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Entity[] entities;
+        private final int start;
+        private final int end;
+        private final float delta;
+
+        public PoseTask(Entity[] entities, int start, int end, float delta) {
+            this.entities = entities;
+            this.start = start;
+            this.end = end;
+            this.delta = delta;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= POSE_BATCH_SIZE) {
+                for (int i = start; i < end; i++) {
+                    updatePose(entities[i], delta);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new PoseTask(entities, start, middle, delta), new PoseTask(entities, middle, end, delta));
+            }
+        }
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Pool for entities that are spawned and destroyed in large numbers.
+ * Entities obtained from an EntityPool are returned to it automatically by
+ * the EntityManager once they have been destroyed and removed.
+ */
+public abstract class EntityPool<T extends Entity> extends Pool<T> {
+    public EntityPool() {
+        super();
+    }
+    
+    public EntityPool(int initialCapacity) {
+        super(initialCapacity);
+    }
+    
+    protected abstract T createEntity();
+
+    @Override
+    protected T newObject() {
+        T entity = createEntity();
+        entity.pool = this;
+        return entity;
+    }
+
+    @Override
+    protected void reset(T entity) {
+        entity.reset();
+    }
+    
+    public void fill(int count) {
+        for (int i = 0; i < count; i++) {
+            free(newObject());
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    void release(Entity entity) {
+        free((T) entity);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.badlogic.gdx.utils.ScreenUtils;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.Animation.MixDirection;
+import com.esotericsoftware.spine.Animation.MixPose;
+import com.esotericsoftware.spine.Event;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+
+/**
+ * Every animation of a skeleton rasterized into frames at a fixed frame rate.
+ * Frames are packed into the generated atlas during loading and drawn as
+ * single quads, which is far cheaper than generating the skeleton mesh for
+ * small effects.
+ */
+public class Flipbook {
+    private static final int PADDING = 2;
+    private static final short[] TRIANGLES = {0, 1, 2, 2, 3, 0};
+    private static final float[] vertices = new float[24];
+    private static final float[] spriteVertices = new float[20];
+    private static final float LIGHT = Color.WHITE.toFloatBits();
+    private static final float DARK = Color.BLACK.toFloatBits();
+    private final String name;
+    private final String skeletonDataPath;
+    private final String skin;
+    private final float frameDuration;
+    private final ObjectMap<String, Array<TextureRegion>> animations;
+    private float originX;
+    private float originY;
+    
+    /**
+     * @param name Prefix of the region names in the atlas.
+     * @param skin The skin to render or null for the default skin.
+     */
+    public Flipbook(String name, String skeletonDataPath, String skin, float frameDuration) {
+        this.name = name;
+        this.skeletonDataPath = skeletonDataPath;
+        this.skin = skin;
+        this.frameDuration = frameDuration;
+        animations = new ObjectMap<String, Array<TextureRegion>>();
+    }
+    
+    /**
+     * Renders every frame of every animation and packs the frames into the
+     * packer. Requires a GL context.
+     */
+    public void bake(PixmapPacker packer) {
+        SkeletonData skeletonData = Core.assetManager.get(skeletonDataPath, SkeletonData.class);
+        Skeleton skeleton = new Skeleton(skeletonData);
+        if (skin != null) {
+            skeleton.setSkin(skin);
+        }
+        
+        Array<Event> events = new Array<Event>();
+        Vector2 offset = new Vector2();
+        Vector2 size = new Vector2();
+        FloatArray temp = new FloatArray();
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (Animation animation : skeletonData.getAnimations()) {
+            for (int frame = 0; frame < getFrameCount(animation); frame++) {
+                pose(skeleton, animation, frame * frameDuration, events);
+                skeleton.getBounds(offset, size, temp);
+                minX = Math.min(minX, offset.x);
+                minY = Math.min(minY, offset.y);
+                maxX = Math.max(maxX, offset.x + size.x);
+                maxY = Math.max(maxY, offset.y + size.y);
+            }
+        }
+        
+        int width = MathUtils.ceil(maxX) - MathUtils.floor(minX) + PADDING * 2;
+        int height = MathUtils.ceil(maxY) - MathUtils.floor(minY) + PADDING * 2;
+        originX = PADDING - MathUtils.floor(minX);
+        originY = PADDING - MathUtils.floor(minY);
+        
+        FrameBuffer frameBuffer = new FrameBuffer(Pixmap.Format.RGBA8888, width, height, false);
+        TwoColorPolygonBatch batch = new TwoColorPolygonBatch(1000);
+        OrthographicCamera camera = new OrthographicCamera();
+        camera.setToOrtho(true, width, height);
+        
+        for (Animation animation : skeletonData.getAnimations()) {
+            for (int frame = 0; frame < getFrameCount(animation); frame++) {
+                pose(skeleton, animation, frame * frameDuration, events);
+                skeleton.setPosition(originX, originY);
+                skeleton.updateWorldTransform();
+                
+                frameBuffer.begin();
+                Gdx.gl.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
+                Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+                batch.setProjectionMatrix(camera.combined);
+                batch.begin();
+                batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+                Core.skeletonRenderer.draw(batch, skeleton);
+                batch.end();
+                Pixmap pixmap = ScreenUtils.getFrameBufferPixmap(0, 0, width, height);
+                frameBuffer.end();
+                
+                packer.pack(getRegionName(animation.getName(), frame), pixmap);
+                pixmap.dispose();
+            }
+        }
+        
+        batch.dispose();
+        frameBuffer.dispose();
+    }
+    
+    /**
+     * Looks up the packed frames in the atlas generated from the packer passed
+     * to {@link #bake(PixmapPacker)}.
+     */
+    public void resolve(TextureAtlas atlas) {
+        animations.clear();
+        SkeletonData skeletonData = Core.assetManager.get(skeletonDataPath, SkeletonData.class);
+        for (Animation animation : skeletonData.getAnimations()) {
+            Array<TextureRegion> frames = new Array<TextureRegion>();
+            for (int frame = 0; frame < getFrameCount(animation); frame++) {
+                frames.add(atlas.findRegion(getRegionName(animation.getName(), frame)));
+            }
+            animations.put(animation.getName(), frames);
+        }
+    }
+    
+    private void pose(Skeleton skeleton, Animation animation, float time, Array<Event> events) {
+        skeleton.setToSetupPose();
+        skeleton.setPosition(0.0f, 0.0f);
+        animation.apply(skeleton, time, time, false, events, 1.0f, MixPose.setup, MixDirection.in);
+        events.clear();
+        skeleton.updateWorldTransform();
+    }
+    
+    private int getFrameCount(Animation animation) {
+        return Math.max(1, MathUtils.ceil(animation.getDuration() / frameDuration));
+    }
+    
+    private String getRegionName(String animation, int frame) {
+        return name + "-" + animation + "-" + frame;
+    }
+    
+    public boolean isResolved() {
+        return animations.size > 0;
+    }
+    
+    public TextureRegion getFrame(String animation, float time) {
+        Array<TextureRegion> frames = animations.get(animation);
+        return frames.get(MathUtils.clamp((int) (time / frameDuration), 0, frames.size - 1));
+    }
+    
+    /**
+     * Draws the frame with the skeleton origin at x, y. Draws into
+     * {@link Core#recordingBatch} instead if it is set.
+     */
+    public void draw(TwoColorPolygonBatch batch, TextureRegion region, float x, float y) {
+        if (Core.recordingBatch != null) {
+            draw(Core.recordingBatch, region, x, y);
+            return;
+        }
+        
+        float x1 = x - originX;
+        float y1 = y - originY;
+        float x2 = x1 + region.getRegionWidth();
+        float y2 = y1 + region.getRegionHeight();
+        
+        float[] vertices = Flipbook.vertices;
+        vertices[0] = x1;
+        vertices[1] = y1;
+        vertices[2] = LIGHT;
+        vertices[3] = DARK;
+        vertices[4] = region.getU();
+        vertices[5] = region.getV2();
+        
+        vertices[6] = x1;
+        vertices[7] = y2;
+        vertices[8] = LIGHT;
+        vertices[9] = DARK;
+        vertices[10] = region.getU();
+        vertices[11] = region.getV();
+        
+        vertices[12] = x2;
+        vertices[13] = y2;
+        vertices[14] = LIGHT;
+        vertices[15] = DARK;
+        vertices[16] = region.getU2();
+        vertices[17] = region.getV();
+        
+        vertices[18] = x2;
+        vertices[19] = y1;
+        vertices[20] = LIGHT;
+        vertices[21] = DARK;
+        vertices[22] = region.getU2();
+        vertices[23] = region.getV2();
+        
+        batch.draw(region.getTexture(), vertices, 0, vertices.length, TRIANGLES, 0, TRIANGLES.length);
+    }
+    
+    /**
+     * Draws the frame as a sprite without the dark color.
+     */
+    public void draw(Batch batch, TextureRegion region, float x, float y) {
+        float x1 = x - originX;
+        float y1 = y - originY;
+        float x2 = x1 + region.getRegionWidth();
+        float y2 = y1 + region.getRegionHeight();
+        
+        float[] vertices = Flipbook.spriteVertices;
+        vertices[Batch.X1] = x1;
+        vertices[Batch.Y1] = y1;
+        vertices[Batch.C1] = LIGHT;
+        vertices[Batch.U1] = region.getU();
+        vertices[Batch.V1] = region.getV2();
+        
+        vertices[Batch.X2] = x1;
+        vertices[Batch.Y2] = y2;
+        vertices[Batch.C2] = LIGHT;
+        vertices[Batch.U2] = region.getU();
+        vertices[Batch.V2] = region.getV();
+        
+        vertices[Batch.X3] = x2;
+        vertices[Batch.Y3] = y2;
+        vertices[Batch.C3] = LIGHT;
+        vertices[Batch.U3] = region.getU2();
+        vertices[Batch.V3] = region.getV();
+        
+        vertices[Batch.X4] = x2;
+        vertices[Batch.Y4] = y1;
+        vertices[Batch.C4] = LIGHT;
+        vertices[Batch.U4] = region.getU2();
+        vertices[Batch.V4] = region.getV2();
+        
+        batch.draw(region.getTexture(), vertices, 0, vertices.length);
+    }
+
+    public String getName() {
+        return name;
+    }
+}
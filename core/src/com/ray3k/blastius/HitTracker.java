@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntIntMap.Entry;
+import java.util.Iterator;
+
+/**
+ * Remembers which entities already hit an entity so that each one only counts
+ * once for as long as it lives. Entries are keyed by the arena slot of the
+ * entity's generational handle and hold the slot's generation, so an entity
+ * reusing the slot is not mistaken for the one that was tracked. Entries of
+ * entities whose handle no longer resolves are purged as the tracker grows.
+ */
+public class HitTracker {
+    private final EntityManager manager;
+    private final IntIntMap generations;
+    private int purgeSize;
+    
+    public HitTracker(EntityManager manager) {
+        this.manager = manager;
+        generations = new IntIntMap();
+        purgeSize = 16;
+    }
+    
+    /**
+     * Returns true if the entity was added while it held its current
+     * generational handle. Once the entity is removed from the manager its
+     * handle no longer matches, so it is no longer contained, and its entry
+     * is dropped by the next purge.
+     */
+    public boolean contains(Entity entity) {
+        long handle = entity.getHandle();
+        return handle != 0 && generations.get((int) handle, 0) == (int) (handle >>> 32);
+    }
+    
+    public void add(Entity entity) {
+        long handle = entity.getHandle();
+        generations.put((int) handle, (int) (handle >>> 32));
+        
+        if (generations.size >= purgeSize) {
+            purge();
+            purgeSize = Math.max(16, generations.size * 2);
+        }
+    }
+    
+    private void purge() {
+        Iterator<Entry> iter = generations.entries();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (manager.resolve((long) entry.value << 32 | entry.key) == null) {
+                iter.remove();
+            }
+        }
+    }
+    
+    public void clear() {
+        generations.clear();
+    }
+    
+    public int size() {
+        return generations.size;
+    }
+}
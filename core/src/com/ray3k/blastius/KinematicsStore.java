@@ -0,0 +1,126 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Structure of arrays holding the position, speed and gravity of every
+ * entity in an EntityManager. Entities attached to the store read and write
+ * their kinematics through their slot, which lets integration run as a single
+ * loop over primitive arrays.
+ */
+public class KinematicsStore {
+    float[] x;
+    float[] y;
+    float[] previousX;
+    float[] previousY;
+    float[] xSpeed;
+    float[] ySpeed;
+    float[] xGravity;
+    float[] yGravity;
+    private int size;
+    private final IntArray freeSlots;
+    
+    public KinematicsStore(int capacity) {
+        x = new float[capacity];
+        y = new float[capacity];
+        previousX = new float[capacity];
+        previousY = new float[capacity];
+        xSpeed = new float[capacity];
+        ySpeed = new float[capacity];
+        xGravity = new float[capacity];
+        yGravity = new float[capacity];
+        freeSlots = new IntArray();
+    }
+    
+    int allocate() {
+        if (freeSlots.size > 0) {
+            return freeSlots.pop();
+        }
+        
+        if (size == x.length) {
+            resize(Math.max(8, size * 2));
+        }
+        return size++;
+    }
+    
+    void free(int slot) {
+        x[slot] = 0;
+        y[slot] = 0;
+        previousX[slot] = 0;
+        previousY[slot] = 0;
+        xSpeed[slot] = 0;
+        ySpeed[slot] = 0;
+        xGravity[slot] = 0;
+        yGravity[slot] = 0;
+        freeSlots.add(slot);
+    }
+    
+    private void resize(int capacity) {
+        x = copy(x, capacity);
+        y = copy(y, capacity);
+        previousX = copy(previousX, capacity);
+        previousY = copy(previousY, capacity);
+        xSpeed = copy(xSpeed, capacity);
+        ySpeed = copy(ySpeed, capacity);
+        xGravity = copy(xGravity, capacity);
+        yGravity = copy(yGravity, capacity);
+    }
+    
+    private static float[] copy(float[] array, int capacity) {
+        float[] result = new float[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+    
+    /**
+     * Applies gravity to speed and speed to position for every slot, keeping
+     * the position from before the step. Free slots are zeroed so they can be
+     * integrated without effect.
+     */
+    public void integrate(float delta) {
+        float[] x = this.x;
+        float[] y = this.y;
+        float[] previousX = this.previousX;
+        float[] previousY = this.previousY;
+        float[] xSpeed = this.xSpeed;
+        float[] ySpeed = this.ySpeed;
+        float[] xGravity = this.xGravity;
+        float[] yGravity = this.yGravity;
+        
+        for (int i = 0; i < size; i++) {
+            xSpeed[i] += xGravity[i] * delta;
+            ySpeed[i] += yGravity[i] * delta;
+            previousX[i] = x[i];
+            previousY[i] = y[i];
+            x[i] += xSpeed[i] * delta;
+            y[i] += ySpeed[i] * delta;
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+}
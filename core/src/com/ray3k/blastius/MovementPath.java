@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * A looping movement pattern expressed as a closed Catmull-Rom spline. The
+ * control points are taken from the bone that travels furthest in a baked
+ * animation, so the curve follows the visible motion of the skeleton while
+ * being evaluated in constant time for any point in time. Evaluation keeps no
+ * state, so one path can be shared by entities posed in parallel.
+ */
+public class MovementPath {
+    private static final int BOUNDS_SAMPLES = 8;
+    private final float[] points;
+    private final int count;
+    private final float duration;
+    private final float minX;
+    private final float minY;
+    private final float maxX;
+    private final float maxY;
+    
+    /**
+     * Builds the path from every frameInterval-th frame of the animation.
+     */
+    public MovementPath(BakedAnimation animation, int frameInterval) {
+        this(getControlPoints(animation, frameInterval), animation.getFrameCount() * animation.getStep());
+    }
+    
+    /**
+     * @param points The control points as x, y pairs. The curve passes through
+     * each of them in turn at even intervals and loops back to the first.
+     */
+    MovementPath(float[] points, float duration) {
+        this.points = points;
+        this.duration = duration;
+        count = points.length / 2;
+        
+        //the curve can overshoot its control points, so sample it between them
+        Vector2 point = new Vector2();
+        float pathMinX = Float.MAX_VALUE, pathMinY = Float.MAX_VALUE, pathMaxX = -Float.MAX_VALUE, pathMaxY = -Float.MAX_VALUE;
+        for (int i = 0; i < count * BOUNDS_SAMPLES; i++) {
+            getOffset(i * duration / (count * BOUNDS_SAMPLES), point);
+            pathMinX = Math.min(pathMinX, point.x);
+            pathMinY = Math.min(pathMinY, point.y);
+            pathMaxX = Math.max(pathMaxX, point.x);
+            pathMaxY = Math.max(pathMaxY, point.y);
+        }
+        minX = pathMinX;
+        minY = pathMinY;
+        maxX = pathMaxX;
+        maxY = pathMaxY;
+    }
+    
+    private static float[] getControlPoints(BakedAnimation animation, int frameInterval) {
+        //find the bone with the largest range of motion
+        int bone = 0;
+        float bestRange = -1.0f;
+        for (int i = 0; i < animation.getBoneCount(); i++) {
+            float boneMinX = Float.MAX_VALUE, boneMinY = Float.MAX_VALUE, boneMaxX = -Float.MAX_VALUE, boneMaxY = -Float.MAX_VALUE;
+            for (int frame = 0; frame < animation.getFrameCount(); frame++) {
+                float x = animation.getBoneX(frame, i);
+                float y = animation.getBoneY(frame, i);
+                boneMinX = Math.min(boneMinX, x);
+                boneMinY = Math.min(boneMinY, y);
+                boneMaxX = Math.max(boneMaxX, x);
+                boneMaxY = Math.max(boneMaxY, y);
+            }
+            
+            float range = boneMaxX - boneMinX + boneMaxY - boneMinY;
+            if (range > bestRange) {
+                bestRange = range;
+                bone = i;
+            }
+        }
+        
+        int count = Math.max(2, (animation.getFrameCount() + frameInterval - 1) / frameInterval);
+        float[] points = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            int frame = Math.min(i * frameInterval, animation.getFrameCount() - 1);
+            points[i * 2] = animation.getBoneX(frame, bone);
+            points[i * 2 + 1] = animation.getBoneY(frame, bone);
+        }
+        return points;
+    }
+    
+    /**
+     * Writes the offset of the curve from the skeleton position at the given
+     * time since the pattern started. The pattern loops after getDuration()
+     * seconds.
+     */
+    private Vector2 getOffset(float time, Vector2 out) {
+        float t = (time % duration) / duration;
+        if (t < 0.0f) {
+            t += 1.0f;
+        }
+        
+        float u = t * count;
+        int span = Math.min((int) u, count - 1);
+        u -= span;
+        int i0 = (span + count - 1) % count * 2;
+        int i1 = span * 2;
+        int i2 = (span + 1) % count * 2;
+        int i3 = (span + 2) % count * 2;
+        
+        float u2 = u * u;
+        float u3 = u2 * u;
+        float b0 = (-u3 + 2.0f * u2 - u) * 0.5f;
+        float b1 = (3.0f * u3 - 5.0f * u2 + 2.0f) * 0.5f;
+        float b2 = (-3.0f * u3 + 4.0f * u2 + u) * 0.5f;
+        float b3 = (u3 - u2) * 0.5f;
+        return out.set(b0 * points[i0] + b1 * points[i1] + b2 * points[i2] + b3 * points[i3],
+                b0 * points[i0 + 1] + b1 * points[i1 + 1] + b2 * points[i2 + 1] + b3 * points[i3 + 1]);
+    }
+    
+    /**
+     * Writes the position at the given time of an entity that started the
+     * pattern at the spawn position and drifts with a constant speed.
+     */
+    public Vector2 getPosition(float spawnX, float spawnY, float xSpeed, float ySpeed, float time, Vector2 out) {
+        getOffset(time, out);
+        return out.add(spawnX + xSpeed * time, spawnY + ySpeed * time);
+    }
+    
+    /**
+     * Returns the time since the pattern started from which the positions of
+     * an entity that started the pattern at the spawn position and drifts with
+     * a constant speed stay outside of the given area. Returns infinity if the
+     * entity does not drift away.
+     */
+    public float getExitTime(float spawnX, float spawnY, float xSpeed, float ySpeed, float areaMinX, float areaMinY, float areaMaxX, float areaMaxY) {
+        float exitTime = Float.POSITIVE_INFINITY;
+        if (xSpeed < 0.0f) {
+            exitTime = Math.min(exitTime, (areaMinX - spawnX - maxX) / xSpeed);
+        } else if (xSpeed > 0.0f) {
+            exitTime = Math.min(exitTime, (areaMaxX - spawnX - minX) / xSpeed);
+        }
+        
+        if (ySpeed < 0.0f) {
+            exitTime = Math.min(exitTime, (areaMinY - spawnY - maxY) / ySpeed);
+        } else if (ySpeed > 0.0f) {
+            exitTime = Math.min(exitTime, (areaMaxY - spawnY - minY) / ySpeed);
+        }
+        return Math.max(exitTime, 0.0f);
+    }
+
+    public float getDuration() {
+        return duration;
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * A Batch that renders nothing and only counts what is submitted to it, so the
+ * render path can be measured without an OpenGL context. Flushes are counted
+ * where a SpriteBatch of the same size would flush: on texture and blend
+ * changes, when the vertex buffer is full and on {@link #end()}.
+ * <p>
+ * Install it as {@link Core#recordingBatch} to redirect every entity, bullet
+ * and flipbook draw into it. Draws are attributed to the class set with
+ * {@link #setSource(Class)}, which the RenderQueue sets to the class of each
+ * entity it draws. Call {@link #endFrame()} after each frame to report the
+ * statistics to the listener and clear them.
+ * <p>
+ * Recording measures the SpriteBatch path, not the TwoColorPolygonBatch the
+ * game draws with. The TwoColorPolygonBatch of this Spine runtime is not a
+ * Batch and needs a GL context, so while recording, skeletons and flipbooks
+ * are drawn with their sprite batch overloads. Draw, texture switch and flush
+ * counts carry over. Vertex counts are in the sprite format, and the
+ * two-color batch's own buffer size and flush points are not modelled.
+ */
+public class RecordingBatch implements Batch {
+    private static final int SPRITE_VERTEX_SIZE = 5;
+    private final int size;
+    private final Color color;
+    private float packedColor;
+    private final Matrix4 projectionMatrix;
+    private final Matrix4 transformMatrix;
+    private ShaderProgram shader;
+    private boolean drawing;
+    private boolean blendingDisabled;
+    private int blendSrcFunc;
+    private int blendDstFunc;
+    private int blendSrcFuncAlpha;
+    private int blendDstFuncAlpha;
+    private Texture lastTexture;
+    private int pendingVertices;
+    private int frame;
+    private int drawCount;
+    private int vertexCount;
+    private int triangleCount;
+    private int flushCount;
+    private int textureSwitchCount;
+    private final ObjectIntMap<Class<?>> submissions;
+    private Class<?> source;
+    private FrameListener frameListener;
+    
+    /**
+     * @param size The number of vertices the simulated buffer holds before it
+     * has to flush.
+     */
+    public RecordingBatch(int size) {
+        this.size = size;
+        color = new Color(1.0f, 1.0f, 1.0f, 1.0f);
+        packedColor = color.toFloatBits();
+        projectionMatrix = new Matrix4();
+        transformMatrix = new Matrix4();
+        blendSrcFunc = GL20.GL_SRC_ALPHA;
+        blendDstFunc = GL20.GL_ONE_MINUS_SRC_ALPHA;
+        blendSrcFuncAlpha = GL20.GL_SRC_ALPHA;
+        blendDstFuncAlpha = GL20.GL_ONE_MINUS_SRC_ALPHA;
+        submissions = new ObjectIntMap<Class<?>>();
+    }
+    
+    private void submit(Texture texture, int vertices, int triangles) {
+        if (!drawing) {
+            throw new IllegalStateException("RecordingBatch.begin must be called before draw.");
+        }
+        
+        if (texture != lastTexture) {
+            if (lastTexture != null) {
+                textureSwitchCount++;
+            }
+            flush();
+            lastTexture = texture;
+        } else if (pendingVertices + vertices > size) {
+            flush();
+        }
+        
+        pendingVertices += vertices;
+        drawCount++;
+        vertexCount += vertices;
+        triangleCount += triangles;
+        if (source != null) {
+            submissions.getAndIncrement(source, 0, 1);
+        }
+    }
+    
+    private void submitQuad(Texture texture) {
+        submit(texture, 4, 2);
+    }
+
+    @Override
+    public void begin() {
+        if (drawing) {
+            throw new IllegalStateException("RecordingBatch.end must be called before begin.");
+        }
+        drawing = true;
+    }
+
+    @Override
+    public void end() {
+        if (!drawing) {
+            throw new IllegalStateException("RecordingBatch.begin must be called before end.");
+        }
+        flush();
+        lastTexture = null;
+        drawing = false;
+    }
+
+    @Override
+    public void flush() {
+        if (pendingVertices == 0) {
+            return;
+        }
+        flushCount++;
+        pendingVertices = 0;
+    }
+
+    @Override
+    public void setColor(Color tint) {
+        color.set(tint);
+        packedColor = tint.toFloatBits();
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {
+        color.set(r, g, b, a);
+        packedColor = color.toFloatBits();
+    }
+
+    @Override
+    public void setColor(float color) {
+        Color.abgr8888ToColor(this.color, color);
+        packedColor = color;
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public float getPackedColor() {
+        return packedColor;
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) {
+        submitQuad(texture);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) {
+        submitQuad(texture);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight) {
+        submitQuad(texture);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2, float v2) {
+        submitQuad(texture);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y) {
+        submitQuad(texture);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height) {
+        submitQuad(texture);
+    }
+
+    @Override
+    public void draw(Texture texture, float[] spriteVertices, int offset, int count) {
+        int vertices = count / SPRITE_VERTEX_SIZE;
+        submit(texture, vertices, vertices / 2);
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y) {
+        submitQuad(region.getTexture());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float width, float height) {
+        submitQuad(region.getTexture());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation) {
+        submitQuad(region.getTexture());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, boolean clockwise) {
+        submitQuad(region.getTexture());
+    }
+
+    @Override
+    public void draw(TextureRegion region, float width, float height, Affine2 transform) {
+        submitQuad(region.getTexture());
+    }
+
+    @Override
+    public void disableBlending() {
+        if (blendingDisabled) {
+            return;
+        }
+        flush();
+        blendingDisabled = true;
+    }
+
+    @Override
+    public void enableBlending() {
+        if (!blendingDisabled) {
+            return;
+        }
+        flush();
+        blendingDisabled = false;
+    }
+
+    @Override
+    public void setBlendFunction(int srcFunc, int dstFunc) {
+        setBlendFunctionSeparate(srcFunc, dstFunc, srcFunc, dstFunc);
+    }
+
+    @Override
+    public void setBlendFunctionSeparate(int srcFuncColor, int dstFuncColor, int srcFuncAlpha, int dstFuncAlpha) {
+        if (blendSrcFunc == srcFuncColor && blendDstFunc == dstFuncColor && blendSrcFuncAlpha == srcFuncAlpha && blendDstFuncAlpha == dstFuncAlpha) {
+            return;
+        }
+        flush();
+        blendSrcFunc = srcFuncColor;
+        blendDstFunc = dstFuncColor;
+        blendSrcFuncAlpha = srcFuncAlpha;
+        blendDstFuncAlpha = dstFuncAlpha;
+    }
+
+    @Override
+    public int getBlendSrcFunc() {
+        return blendSrcFunc;
+    }
+
+    @Override
+    public int getBlendDstFunc() {
+        return blendDstFunc;
+    }
+
+    @Override
+    public int getBlendSrcFuncAlpha() {
+        return blendSrcFuncAlpha;
+    }
+
+    @Override
+    public int getBlendDstFuncAlpha() {
+        return blendDstFuncAlpha;
+    }
+
+    @Override
+    public Matrix4 getProjectionMatrix() {
+        return projectionMatrix;
+    }
+
+    @Override
+    public Matrix4 getTransformMatrix() {
+        return transformMatrix;
+    }
+
+    @Override
+    public void setProjectionMatrix(Matrix4 projection) {
+        if (drawing) {
+            flush();
+        }
+        projectionMatrix.set(projection);
+    }
+
+    @Override
+    public void setTransformMatrix(Matrix4 transform) {
+        if (drawing) {
+            flush();
+        }
+        transformMatrix.set(transform);
+    }
+
+    @Override
+    public void setShader(ShaderProgram shader) {
+        if (drawing) {
+            flush();
+        }
+        this.shader = shader;
+    }
+
+    @Override
+    public ShaderProgram getShader() {
+        return shader;
+    }
+
+    @Override
+    public boolean isBlendingEnabled() {
+        return !blendingDisabled;
+    }
+
+    @Override
+    public boolean isDrawing() {
+        return drawing;
+    }
+
+    @Override
+    public void dispose() {
+    }
+    
+    /**
+     * Sets the class following draws are attributed to, or null to stop
+     * attributing them.
+     */
+    public void setSource(Class<?> source) {
+        this.source = source;
+    }
+    
+    /**
+     * Reports the statistics of the frame to the listener, then clears them.
+     */
+    public void endFrame() {
+        if (frameListener != null) {
+            frameListener.frameEnded(this);
+        }
+        clearStats();
+        frame++;
+    }
+    
+    public void clearStats() {
+        drawCount = 0;
+        vertexCount = 0;
+        triangleCount = 0;
+        flushCount = 0;
+        textureSwitchCount = 0;
+        submissions.clear();
+    }
+    
+    /**
+     * Returns the number of frames ended so far.
+     */
+    public int getFrame() {
+        return frame;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getTriangleCount() {
+        return triangleCount;
+    }
+
+    public int getFlushCount() {
+        return flushCount;
+    }
+
+    public int getTextureSwitchCount() {
+        return textureSwitchCount;
+    }
+    
+    /**
+     * Returns the number of draws attributed to the class in this frame.
+     */
+    public int getSubmissions(Class<?> source) {
+        return submissions.get(source, 0);
+    }
+
+    public ObjectIntMap<Class<?>> getSubmissions() {
+        return submissions;
+    }
+
+    public FrameListener getFrameListener() {
+        return frameListener;
+    }
+
+    public void setFrameListener(FrameListener frameListener) {
+        this.frameListener = frameListener;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("frame ").append(frame).append(": ").append(drawCount).append(" draws, ")
+                .append(vertexCount).append(" vertices, ").append(triangleCount).append(" triangles, ")
+                .append(flushCount).append(" flushes, ").append(textureSwitchCount).append(" texture switches");
+        for (ObjectIntMap.Entry<Class<?>> entry : submissions) {
+            builder.append(", ").append(entry.key.getSimpleName()).append(" ").append(entry.value);
+        }
+        return builder.toString();
+    }
+    
+    public static interface FrameListener {
+        public void frameEnded(RecordingBatch batch);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * Keeps entities grouped by depth so they can be drawn in order without
+ * sorting. Buckets are drawn from the highest depth to the lowest. Entities
+ * only move between buckets when they are added, removed or change depth.
+ * Entities whose collision box lies outside of the view are skipped.
+ * <p>
+ * Within a depth, entities are reordered so that those drawing with the same
+ * batch, texture and blend mode are next to each other, since each change
+ * between them forces the batch to flush. The buckets keep their order
+ * between frames, so the insertion sort only has to move the few entities
+ * that were added or changed texture.
+ */
+public class RenderQueue {
+    public static final int SPRITE_BATCH = 0;
+    public static final int TWO_COLOR_BATCH = 1;
+    /**
+     * Blend mode of entities that switch blend modes while drawing.
+     */
+    public static final int MIXED_BLEND = -1;
+    private static final long UNKNOWN_TEXTURE = 0xFFFFFFFFL << 16;
+    private final IntMap<Array<Entity>> buckets;
+    private final IntArray depths;
+    private final ObjectIntMap<Texture> textureIds;
+    private long[] keys;
+    private int drawnCount;
+    private int culledCount;
+    private int flushCount;
+    
+    public RenderQueue() {
+        buckets = new IntMap<Array<Entity>>();
+        depths = new IntArray();
+        textureIds = new ObjectIntMap<Texture>();
+        keys = new long[16];
+    }
+    
+    void add(Entity entity) {
+        Array<Entity> bucket = getBucket(entity.getDepth());
+        entity.depthPosition = bucket.size;
+        bucket.add(entity);
+    }
+    
+    void remove(Entity entity) {
+        Array<Entity> bucket = getBucket(entity.getDepth());
+        Entity last = bucket.pop();
+        if (last != entity) {
+            bucket.set(entity.depthPosition, last);
+            last.depthPosition = entity.depthPosition;
+        }
+    }
+    
+    private Array<Entity> getBucket(int depth) {
+        Array<Entity> bucket = buckets.get(depth);
+        if (bucket == null) {
+            bucket = new Array<Entity>();
+            buckets.put(depth, bucket);
+            
+            int i = 0;
+            while (i < depths.size && depths.get(i) > depth) {
+                i++;
+            }
+            depths.insert(i, depth);
+        }
+        return bucket;
+    }
+    
+    /**
+     * Draws every entity, culling those whose collision box does not overlap
+     * the view grown by the margin. Entities with an empty collision box are
+     * never culled. Pass a null view to disable culling.
+     */
+    public void draw(SpriteBatch spriteBatch, float delta, Rectangle view, float margin) {
+        drawnCount = 0;
+        culledCount = 0;
+        flushCount = 0;
+        long lastKey = 0;
+        
+        float minX = 0, minY = 0, maxX = 0, maxY = 0;
+        if (view != null) {
+            minX = view.x - margin;
+            minY = view.y - margin;
+            maxX = view.x + view.width + margin;
+            maxY = view.y + view.height + margin;
+        }
+        
+        for (int i = 0; i < depths.size; i++) {
+            Array<Entity> bucket = buckets.get(depths.get(i));
+            sort(bucket);
+            for (int j = 0; j < bucket.size; j++) {
+                Entity entity = bucket.get(j);
+                if (!entity.isDestroyed()) {
+                    Rectangle box = entity.getCollisionBox();
+                    if (view != null && (box.width > 0.0f || box.height > 0.0f)
+                            && (box.x > maxX || box.x + box.width < minX || box.y > maxY || box.y + box.height < minY)) {
+                        entity.culled = true;
+                        culledCount++;
+                    } else {
+                        entity.culled = false;
+                        if (Core.recordingBatch != null) {
+                            Core.recordingBatch.setSource(entity.getClass());
+                        }
+                        entity.draw(spriteBatch, delta);
+                        drawnCount++;
+                        
+                        long key = keys[j];
+                        if ((key & UNKNOWN_TEXTURE) != UNKNOWN_TEXTURE && (flushCount == 0 || key != lastKey || (key & 0xFFFF) == 0xFFFF)) {
+                            flushCount++;
+                            lastKey = key;
+                        }
+                    }
+                }
+            }
+        }
+        
+        if (Core.recordingBatch != null) {
+            Core.recordingBatch.setSource(null);
+        }
+    }
+
+    /**
+     * Stable insertion sort of the bucket by batch type, texture and blend
+     * mode. Entities without a known texture go last. Leaves the key of each
+     * entity in keys.
+     */
+    private void sort(Array<Entity> bucket) {
+        if (keys.length < bucket.size) {
+            keys = new long[Math.max(bucket.size, keys.length * 2)];
+        }
+        
+        long[] keys = this.keys;
+        for (int j = 0; j < bucket.size; j++) {
+            Entity entity = bucket.get(j);
+            long key = getKey(entity);
+            int k = j;
+            while (k > 0 && keys[k - 1] > key) {
+                Entity previous = bucket.get(k - 1);
+                keys[k] = keys[k - 1];
+                bucket.set(k, previous);
+                previous.depthPosition = k;
+                k--;
+            }
+            keys[k] = key;
+            bucket.set(k, entity);
+            entity.depthPosition = k;
+        }
+    }
+    
+    private long getKey(Entity entity) {
+        Texture texture = entity.getTexture();
+        if (texture == null) {
+            return (long) entity.getBatchType() << 48 | UNKNOWN_TEXTURE;
+        }
+        
+        long textureId = textureIds.get(texture, -1);
+        if (textureId == -1) {
+            textureId = textureIds.size;
+            textureIds.put(texture, textureIds.size);
+        }
+        return (long) entity.getBatchType() << 48 | textureId << 16 | (entity.getBlendMode() & 0xFFFF);
+    }
+    
+    /**
+     * Returns the number of entities drawn by the last call to draw.
+     */
+    public int getDrawnCount() {
+        return drawnCount;
+    }
+
+    /**
+     * Returns the number of entities skipped by culling in the last call to
+     * draw.
+     */
+    public int getCulledCount() {
+        return culledCount;
+    }
+
+    /**
+     * Returns the number of batch flushes the order of the last call to draw
+     * required, which is one for each run of entities sharing batch type,
+     * texture and blend mode. Flushes caused by a full vertex buffer are not
+     * included.
+     */
+    public int getFlushCount() {
+        return flushCount;
+    }
+}
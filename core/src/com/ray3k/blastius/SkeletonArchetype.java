@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.AnimationStateData;
+import com.esotericsoftware.spine.BlendMode;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.Skin;
+import com.esotericsoftware.spine.SlotData;
+import com.esotericsoftware.spine.attachments.Attachment;
+import com.esotericsoftware.spine.attachments.MeshAttachment;
+import com.esotericsoftware.spine.attachments.RegionAttachment;
+
+/**
+ * Data shared by every entity built from the same skeleton asset. The mix
+ * table lives in a single {@link AnimationStateData} and skins and animations
+ * are resolved once so spawning an entity does not search the skeleton data.
+ * The convex collision shape of every skin is extracted here as well, along
+ * with the texture and blend mode used to group draws.
+ */
+public class SkeletonArchetype {
+    private SkeletonData skeletonData;
+    private AnimationStateData animationStateData;
+    private ObjectMap<String, Skin> skins;
+    private ObjectMap<String, Animation> animations;
+    private ObjectMap<String, CollisionShape> collisionShapes;
+    private Texture texture;
+    private int blendMode;
+
+    public SkeletonArchetype(SkeletonData skeletonData, float defaultMix) {
+        this.skeletonData = skeletonData;
+        animationStateData = new AnimationStateData(skeletonData);
+        animationStateData.setDefaultMix(defaultMix);
+        
+        skins = new ObjectMap<String, Skin>();
+        collisionShapes = new ObjectMap<String, CollisionShape>();
+        for (Skin skin : skeletonData.getSkins()) {
+            skins.put(skin.getName(), skin);
+            collisionShapes.put(skin.getName(), new CollisionShape(skeletonData, skin));
+        }
+        
+        animations = new ObjectMap<String, Animation>();
+        for (Animation animation : skeletonData.getAnimations()) {
+            animations.put(animation.getName(), animation);
+        }
+        
+        texture = findTexture(skeletonData);
+        blendMode = findBlendMode(skeletonData);
+    }
+    
+    /**
+     * Returns the texture shared by every region and mesh attachment, or null
+     * if the attachments are spread over several atlas pages.
+     */
+    private static Texture findTexture(SkeletonData skeletonData) {
+        Texture texture = null;
+        Array<Attachment> attachments = new Array<Attachment>();
+        for (Skin skin : skeletonData.getSkins()) {
+            for (int i = 0; i < skeletonData.getSlots().size; i++) {
+                attachments.clear();
+                skin.findAttachmentsForSlot(i, attachments);
+                for (Attachment attachment : attachments) {
+                    TextureRegion region = null;
+                    if (attachment instanceof RegionAttachment) {
+                        region = ((RegionAttachment) attachment).getRegion();
+                    } else if (attachment instanceof MeshAttachment) {
+                        region = ((MeshAttachment) attachment).getRegion();
+                    }
+                    
+                    if (region != null) {
+                        if (texture == null) {
+                            texture = region.getTexture();
+                        } else if (texture != region.getTexture()) {
+                            return null;
+                        }
+                    }
+                }
+            }
+        }
+        return texture;
+    }
+    
+    private static int findBlendMode(SkeletonData skeletonData) {
+        int blendMode = BlendMode.normal.ordinal();
+        Array<SlotData> slots = skeletonData.getSlots();
+        for (int i = 0; i < slots.size; i++) {
+            int slotBlendMode = slots.get(i).getBlendMode().ordinal();
+            if (i == 0) {
+                blendMode = slotBlendMode;
+            } else if (slotBlendMode != blendMode) {
+                return RenderQueue.MIXED_BLEND;
+            }
+        }
+        return blendMode;
+    }
+
+    public SkeletonData getSkeletonData() {
+        return skeletonData;
+    }
+
+    public AnimationStateData getAnimationStateData() {
+        return animationStateData;
+    }
+    
+    public Skin getSkin(String name) {
+        return skins.get(name);
+    }
+    
+    public Animation getAnimation(String name) {
+        return animations.get(name);
+    }
+    
+    public CollisionShape getCollisionShape(String skinName) {
+        return collisionShapes.get(skinName);
+    }
+    
+    /**
+     * Returns the texture every attachment is drawn from, or null if the
+     * skeleton uses several.
+     */
+    public Texture getTexture() {
+        return texture;
+    }
+    
+    /**
+     * Returns the blend mode shared by every slot, or
+     * {@link RenderQueue#MIXED_BLEND} if the slots differ.
+     */
+    public int getBlendMode() {
+        return blendMode;
+    }
+    
+    public void setDefaultMix(float defaultMix) {
+        animationStateData.setDefaultMix(defaultMix);
+    }
+    
+    public void setMix(String from, String to, float duration) {
+        animationStateData.setMix(animations.get(from), animations.get(to), duration);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Uniform grid broadphase. Items are stored as integer indices bucketed by
+ * their bounding rectangles. Rectangles extending past the grid are clamped
+ * into the border cells so items outside of the playfield are still found.
+ */
+public class SpatialHash {
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final IntArray[] cells;
+    
+    public SpatialHash(float width, float height, float cellSize) {
+        this.cellSize = cellSize;
+        columns = Math.max(1, MathUtils.ceil(width / cellSize));
+        rows = Math.max(1, MathUtils.ceil(height / cellSize));
+        cells = new IntArray[columns * rows];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new IntArray();
+        }
+    }
+    
+    public void clear() {
+        for (IntArray cell : cells) {
+            cell.clear();
+        }
+    }
+    
+    public void insert(int index, Rectangle rectangle) {
+        int minColumn = column(rectangle.x);
+        int maxColumn = column(rectangle.x + rectangle.width);
+        int minRow = row(rectangle.y);
+        int maxRow = row(rectangle.y + rectangle.height);
+        
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                cells[row * columns + column].add(index);
+            }
+        }
+    }
+    
+    /**
+     * Adds the indices of every item sharing a cell with the rectangle to
+     * results. The results are sorted in ascending order without duplicates.
+     */
+    public void query(Rectangle rectangle, IntArray results) {
+        results.clear();
+        int minColumn = column(rectangle.x);
+        int maxColumn = column(rectangle.x + rectangle.width);
+        int minRow = row(rectangle.y);
+        int maxRow = row(rectangle.y + rectangle.height);
+        
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                results.addAll(cells[row * columns + column]);
+            }
+        }
+        
+        if (results.size > 1) {
+            results.sort();
+            int size = 1;
+            for (int i = 1; i < results.size; i++) {
+                if (results.items[i] != results.items[size - 1]) {
+                    results.items[size++] = results.items[i];
+                }
+            }
+            results.size = size;
+        }
+    }
+    
+    private int column(float x) {
+        return MathUtils.clamp((int) Math.floor(x / cellSize), 0, columns - 1);
+    }
+    
+    private int row(float y) {
+        return MathUtils.clamp((int) Math.floor(y / cellSize), 0, rows - 1);
+    }
+
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
@@ -24,47 +24,67 @@
 
 package com.ray3k.blastius;
 
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.esotericsoftware.spine.Animation;
 import com.esotericsoftware.spine.AnimationState;
-import com.esotericsoftware.spine.AnimationStateData;
 import com.esotericsoftware.spine.Skeleton;
 import com.esotericsoftware.spine.SkeletonBounds;
-import com.esotericsoftware.spine.SkeletonData;
 
 public abstract class SpineEntity extends Entity {
     private Skeleton skeleton;
     private AnimationState animationState;
     private SkeletonBounds skeletonBounds;
+    private boolean boundsDirty;
+    private CollisionShape collisionShape;
+    private SkeletonArchetype archetype;
+    private Animation defaultAnimation;
     
     public SpineEntity() {
         super();
     }
     
-    public SpineEntity(String skeletonDataPath, String animation) {
+    public SpineEntity(SkeletonArchetype archetype, String animation) {
         super();
-        setSkeletonData(skeletonDataPath, animation);
+        setArchetype(archetype, animation);
     }
     
-    public void setSkeletonData(String skeletonDataPath, String animation) {
-        SkeletonData skeletonData = Core.assetManager.get(skeletonDataPath, SkeletonData.class);
-        skeleton = new Skeleton(skeletonData);
-        AnimationStateData animationStateData = new AnimationStateData(skeletonData);
-        animationStateData.setDefaultMix(.25f);
-        animationState = new AnimationState(animationStateData);
-        animationState.setAnimation(0, animation, true);
+    public void setArchetype(SkeletonArchetype archetype, String animation) {
+        this.archetype = archetype;
+        skeleton = new Skeleton(archetype.getSkeletonData());
+        animationState = new AnimationState(archetype.getAnimationStateData());
+        defaultAnimation = archetype.getAnimation(animation);
+        animationState.setAnimation(0, defaultAnimation, true);
         
         skeletonBounds = new SkeletonBounds();
-        skeletonBounds.update(skeleton, true);
+        boundsDirty = true;
+        collisionShape = archetype.getCollisionShape("default");
     }
 
     @Override
-    public void act(float delta) {
+    public void updatePose(float delta) {
         if (skeleton != null) {
             skeleton.setPosition(getX(), getY());
-            animationState.update(delta);
             skeleton.updateWorldTransform();
+            updateCollisionBounds();
+        }
+    }
+    
+    /**
+     * Sets the collision box to the bounds of the collision shape. The
+     * polygons kept by {@link SkeletonBounds} are computed on demand by
+     * {@link #getSkeletonBounds()}.
+     */
+    private void updateCollisionBounds() {
+        CollisionShape.setCollisionBounds(this, collisionShape, skeleton);
+        boundsDirty = true;
+    }
+
+    @Override
+    public void act(float delta) {
+        if (skeleton != null) {
+            animationState.update(delta);
             animationState.apply(skeleton);
-            skeletonBounds.update(skeleton, true);
         }
         
         actSub(delta);
@@ -72,10 +92,23 @@ public abstract class SpineEntity extends Entity {
     
     public abstract void actSub(float delta);
 
+    @Override
+    public void reset() {
+        super.reset();
+        
+        if (skeleton != null) {
+            skeleton.setToSetupPose();
+            animationState.clearTracks();
+            animationState.setAnimation(0, defaultAnimation, true);
+            skeleton.updateWorldTransform();
+            boundsDirty = true;
+        }
+    }
+
     @Override
     public void draw(SpriteBatch spriteBatch, float delta) {
         if (skeleton != null) {
-            Core.skeletonRenderer.draw(spriteBatch, skeleton);
+            Core.skeletonRenderer.draw(Core.recordingBatch != null ? Core.recordingBatch : spriteBatch, skeleton);
         }
         
         drawSub(spriteBatch, delta);
@@ -83,6 +116,20 @@ public abstract class SpineEntity extends Entity {
     
     public abstract void drawSub(SpriteBatch spriteBatch, float delta);
 
+    @Override
+    public Texture getTexture() {
+        return skeleton == null ? null : archetype.getTexture();
+    }
+
+    @Override
+    public int getBlendMode() {
+        return skeleton == null ? super.getBlendMode() : archetype.getBlendMode();
+    }
+
+    public SkeletonArchetype getArchetype() {
+        return archetype;
+    }
+
     public Skeleton getSkeleton() {
         return skeleton;
     }
@@ -91,7 +138,16 @@ public abstract class SpineEntity extends Entity {
         return animationState;
     }
 
+    /**
+     * Returns the skeleton's bounding polygons, recomputing them first if the
+     * pose changed since they were last requested. Only call this from the
+     * serial act phase, never from {@link #updatePose(float)}.
+     */
     public SkeletonBounds getSkeletonBounds() {
+        if (boundsDirty) {
+            skeletonBounds.update(skeleton, true);
+            boundsDirty = false;
+        }
         return skeletonBounds;
     }
 }
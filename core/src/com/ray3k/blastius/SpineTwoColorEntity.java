@@ -24,68 +24,315 @@
 
 package com.ray3k.blastius;
 
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.esotericsoftware.spine.Animation;
 import com.esotericsoftware.spine.AnimationState;
-import com.esotericsoftware.spine.AnimationStateData;
+import com.esotericsoftware.spine.AnimationState.TrackEntry;
+import com.esotericsoftware.spine.BlendMode;
 import com.esotericsoftware.spine.Skeleton;
 import com.esotericsoftware.spine.SkeletonBounds;
-import com.esotericsoftware.spine.SkeletonData;
 import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
 import com.ray3k.blastius.states.GameState;
 
 public abstract class SpineTwoColorEntity extends Entity {
+    /**
+     * Entities that were culled in the last draw apply their animation only
+     * every lodInterval ticks, with the delta accumulated in between.
+     */
+    public static int lodInterval = 4;
+    private static int fullRateUpdates;
+    private static int reducedRateUpdates;
+    private static int deferredUpdates;
     private Skeleton skeleton;
     private AnimationState animationState;
     private SkeletonBounds skeletonBounds;
+    private boolean boundsDirty;
+    private CollisionShape collisionShape;
+    private float[] shapeVertices;
+    private boolean shapeDirty;
+    private float animationDelta;
+    private int lodCounter;
+    private boolean poseChanged;
+    private boolean transformDirty;
+    private SkeletonArchetype archetype;
+    private Animation defaultAnimation;
+    private Flipbook flipbook;
     private TwoColorPolygonBatch twoColorPolygonBatch;
     
     public SpineTwoColorEntity() {
         super();
     }
     
-    public SpineTwoColorEntity(String skeletonDataPath, String animation, TwoColorPolygonBatch twoColorPolygonBatch) {
+    public SpineTwoColorEntity(SkeletonArchetype archetype, String animation, TwoColorPolygonBatch twoColorPolygonBatch) {
         super();
-        setSkeletonData(skeletonDataPath, animation);
+        setArchetype(archetype, animation);
         this.twoColorPolygonBatch = twoColorPolygonBatch;
     }
     
-    public void setSkeletonData(String skeletonDataPath, String animation) {
-        SkeletonData skeletonData = Core.assetManager.get(skeletonDataPath, SkeletonData.class);
-        skeleton = new Skeleton(skeletonData);
-        AnimationStateData animationStateData = new AnimationStateData(skeletonData);
-        animationStateData.setDefaultMix(.25f);
-        animationState = new AnimationState(animationStateData);
-        animationState.setAnimation(0, animation, true);
+    public void setArchetype(SkeletonArchetype archetype, String animation) {
+        this.archetype = archetype;
+        skeleton = new Skeleton(archetype.getSkeletonData());
+        animationState = new AnimationState(archetype.getAnimationStateData());
+        defaultAnimation = archetype.getAnimation(animation);
+        animationState.setAnimation(0, defaultAnimation, true);
         
         skeletonBounds = new SkeletonBounds();
-        skeletonBounds.update(skeleton, true);
+        boundsDirty = true;
+        setCollisionShape(archetype.getCollisionShape("default"));
+    }
+    
+    /**
+     * Changes the skin of the skeleton along with the collision shape used for
+     * {@link #overlapsShape(SpineTwoColorEntity)}.
+     */
+    public void setSkin(String skinName) {
+        skeleton.setSkin(archetype.getSkin(skinName));
+        setCollisionShape(archetype.getCollisionShape(skinName));
+        poseChanged = true;
+    }
+    
+    private void setCollisionShape(CollisionShape collisionShape) {
+        this.collisionShape = collisionShape;
+        if (collisionShape != null && (shapeVertices == null || shapeVertices.length < collisionShape.getVertexCount())) {
+            shapeVertices = new float[collisionShape.getVertexCount()];
+        }
+        shapeDirty = true;
     }
 
+    /**
+     * Updates the world transform and collision box. A culled entity whose
+     * animation was not applied since the last update keeps its collision box
+     * offset, which the EntityManager moves with the entity, and only updates
+     * the world transform once something needs it.
+     */
     @Override
-    public void act(float delta) {
+    public void updatePose(float delta) {
         if (skeleton != null) {
+            if (poseChanged || !isCulled()) {
+                skeleton.setPosition(getX(), getY());
+                skeleton.updateWorldTransform();
+                updateCollisionBounds();
+                poseChanged = false;
+                transformDirty = false;
+            } else {
+                transformDirty = true;
+                invalidateShapes();
+            }
+        }
+    }
+    
+    private void updateWorldTransform() {
+        if (transformDirty) {
             skeleton.setPosition(getX(), getY());
-            animationState.update(delta);
             skeleton.updateWorldTransform();
-            animationState.apply(skeleton);
-            skeletonBounds.update(skeleton, true);
+            transformDirty = false;
+        }
+    }
+    
+    /**
+     * Sets the collision box to the bounds of the collision shape. The
+     * polygons kept by {@link SkeletonBounds} and the world vertices of the
+     * shape are not built here; they are computed on demand.
+     */
+    private void updateCollisionBounds() {
+        CollisionShape.setCollisionBounds(this, collisionShape, skeleton);
+        invalidateShapes();
+    }
+    
+    /**
+     * Marks the bounding polygons and collision shape as stale. Subclasses
+     * that pose the skeleton themselves must call this after doing so.
+     */
+    protected void invalidateShapes() {
+        boundsDirty = true;
+        shapeDirty = true;
+    }
+    
+    /**
+     * Tests the collision boxes first, then the convex collision shapes of
+     * both entities. Entities without bounding box attachments are treated as
+     * their collision box. Only call this from the serial act phase.
+     */
+    public boolean overlapsShape(SpineTwoColorEntity other) {
+        if (!getCollisionBox().overlaps(other.getCollisionBox())) {
+            return false;
+        }
+        
+        if (collisionShape == null || collisionShape.isEmpty() || other.collisionShape == null || other.collisionShape.isEmpty()) {
+            return true;
+        }
+        
+        return CollisionShape.overlaps(collisionShape, getShapeVertices(), other.collisionShape, other.getShapeVertices());
+    }
+    
+    /**
+     * Tests the collision shape against a convex polygon in world space. The
+     * caller is expected to have checked the collision box first. Entities
+     * without bounding boxes are treated as overlapping.
+     */
+    public boolean overlapsPolygon(float[] polygon, int offset, int count) {
+        if (collisionShape == null || collisionShape.isEmpty()) {
+            return true;
+        }
+        
+        return CollisionShape.overlaps(collisionShape, getShapeVertices(), polygon, offset, count);
+    }
+    
+    private float[] getShapeVertices() {
+        applyDeferredAnimation();
+        if (shapeDirty) {
+            updateWorldTransform();
+            collisionShape.transform(skeleton, shapeVertices);
+            shapeDirty = false;
+        }
+        return shapeVertices;
+    }
+
+    @Override
+    public void act(float delta) {
+        if (skeleton != null) {
+            animationDelta += delta;
+            if (!isCulled()) {
+                fullRateUpdates++;
+                applyAnimation();
+            } else if (++lodCounter >= lodInterval) {
+                reducedRateUpdates++;
+                applyAnimation();
+            } else {
+                deferredUpdates++;
+            }
         }
         
         actSub(delta);
     }
     
+    private void applyAnimation() {
+        animationState.update(animationDelta);
+        animationState.apply(skeleton);
+        animationDelta = 0.0f;
+        lodCounter = 0;
+        poseChanged = true;
+    }
+    
+    /**
+     * Applies the animation a culled entity accumulated since its last LOD
+     * tick, so the shapes tested against it match its current pose.
+     */
+    private void applyDeferredAnimation() {
+        if (skeleton != null && animationDelta > 0.0f) {
+            applyAnimation();
+            transformDirty = true;
+            invalidateShapes();
+        }
+    }
+    
+    /**
+     * Returns the number of animation updates made by visible entities since
+     * the counters were last reset.
+     */
+    public static int getFullRateUpdates() {
+        return fullRateUpdates;
+    }
+    
+    /**
+     * Returns the number of animation updates made by culled entities since the
+     * counters were last reset.
+     */
+    public static int getReducedRateUpdates() {
+        return reducedRateUpdates;
+    }
+    
+    /**
+     * Returns the number of animation updates culled entities skipped since
+     * the counters were last reset.
+     */
+    public static int getDeferredUpdates() {
+        return deferredUpdates;
+    }
+    
+    public static void resetLodCounters() {
+        fullRateUpdates = 0;
+        reducedRateUpdates = 0;
+        deferredUpdates = 0;
+    }
+    
     public abstract void actSub(float delta);
 
+    /**
+     * Also clears the reduced rate state of the last life, so the first
+     * update after the entity is reused always applies the full pose.
+     */
     @Override
-    public void draw(SpriteBatch spriteBatch, float delta) {
+    public void reset() {
+        super.reset();
+        
+        animationDelta = 0.0f;
+        lodCounter = 0;
+        poseChanged = true;
+        transformDirty = false;
+        invalidateShapes();
+        
         if (skeleton != null) {
-            Core.skeletonRenderer.draw(twoColorPolygonBatch, skeleton);
+            skeleton.setToSetupPose();
+            animationState.clearTracks();
+            animationState.setAnimation(0, defaultAnimation, true);
+            skeleton.updateWorldTransform();
+        }
+    }
+
+    @Override
+    public void draw(SpriteBatch spriteBatch, float delta) {
+        if (isDrawingFlipbook()) {
+            flipbook.draw(twoColorPolygonBatch, getFlipbookFrame(), getX(), getY());
+        } else if (skeleton != null) {
+            updateWorldTransform();
+            if (Core.recordingBatch != null) {
+                Core.skeletonRenderer.draw(Core.recordingBatch, skeleton);
+            } else {
+                Core.skeletonRenderer.draw(twoColorPolygonBatch, skeleton);
+            }
         }
         
         drawSub(spriteBatch, delta);
     }
     
     public abstract void drawSub(SpriteBatch spriteBatch, float delta);
+    
+    private boolean isDrawingFlipbook() {
+        return flipbook != null && isUsingFlipbook() && flipbook.isResolved();
+    }
+    
+    private TextureRegion getFlipbookFrame() {
+        TrackEntry entry = animationState.getCurrent(0);
+        return flipbook.getFrame(entry.getAnimation().getName(), entry.getAnimationTime());
+    }
+
+    @Override
+    public int getBatchType() {
+        return RenderQueue.TWO_COLOR_BATCH;
+    }
+
+    @Override
+    public Texture getTexture() {
+        if (isDrawingFlipbook()) {
+            return getFlipbookFrame().getTexture();
+        }
+        return skeleton == null ? null : archetype.getTexture();
+    }
+
+    @Override
+    public int getBlendMode() {
+        if (isDrawingFlipbook() || skeleton == null) {
+            return BlendMode.normal.ordinal();
+        }
+        return archetype.getBlendMode();
+    }
+
+    public SkeletonArchetype getArchetype() {
+        return archetype;
+    }
 
     public Skeleton getSkeleton() {
         return skeleton;
@@ -95,10 +342,37 @@ public abstract class SpineTwoColorEntity extends Entity {
         return animationState;
     }
 
+    /**
+     * Returns the skeleton's bounding polygons, recomputing them first if the
+     * pose or any deferred animation changed since they were last requested. Only call this from the
+     * serial act phase, never from {@link #updatePose(float)}.
+     */
     public SkeletonBounds getSkeletonBounds() {
+        applyDeferredAnimation();
+        if (boundsDirty) {
+            updateWorldTransform();
+            skeletonBounds.update(skeleton, true);
+            boundsDirty = false;
+        }
         return skeletonBounds;
     }
 
+    public Flipbook getFlipbook() {
+        return flipbook;
+    }
+
+    public void setFlipbook(Flipbook flipbook) {
+        this.flipbook = flipbook;
+    }
+    
+    /**
+     * Returns whether the entity should be drawn from its flipbook instead of
+     * rendering the skeleton. Subclasses switch this per entity type.
+     */
+    public boolean isUsingFlipbook() {
+        return false;
+    }
+
     public TwoColorPolygonBatch getTwoColorPolygonBatch() {
         return twoColorPolygonBatch;
     }
@@ -24,6 +24,8 @@
 
 package com.ray3k.blastius;
 
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
@@ -47,13 +49,19 @@ public abstract class TextureEntity extends Entity {
     @Override
     public void draw(SpriteBatch spriteBatch, float delta) {
         if (textureRegion != null) {
-            spriteBatch.draw(textureRegion, getX() + getXspeed() * delta, getY() + getYspeed() * delta, getOffsetX(), getOffsetY(), textureRegion.getRegionWidth(), textureRegion.getRegionHeight(), getScaleX(), getScaleY(), getRotation());
+            Batch batch = Core.recordingBatch != null ? Core.recordingBatch : spriteBatch;
+            batch.draw(textureRegion, getX() + getXspeed() * delta, getY() + getYspeed() * delta, getOffsetX(), getOffsetY(), textureRegion.getRegionWidth(), textureRegion.getRegionHeight(), getScaleX(), getScaleY(), getRotation());
         }
         
         drawSub(spriteBatch, delta);
     }
     
     public abstract void drawSub(SpriteBatch spriteBatch, float delta);
+
+    @Override
+    public Texture getTexture() {
+        return textureRegion == null ? null : textureRegion.getTexture();
+    }
     
     public TextureRegion getTextureRegion() {
         return textureRegion;
@@ -21,39 +21,35 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
  * THE SOFTWARE.
  */
-
 package com.ray3k.blastius.entities;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.ray3k.blastius.Core;
+import com.ray3k.blastius.BulletField;
 import com.ray3k.blastius.Entity;
-import com.ray3k.blastius.SpineTwoColorEntity;
+import com.ray3k.blastius.RenderQueue;
 import com.ray3k.blastius.states.GameState;
 
-public class BulletEntity extends SpineTwoColorEntity {
-    private Entity parent;
-    private static final float BORDER = 50.0f;
+/**
+ * Draws the bullet field at the depth bullets used to have, so they stay
+ * layered between the other entities. Its collision box is empty, so it is
+ * never culled as a whole, and it has no collision category, so collisions
+ * and spatial queries skip it.
+ */
+public class BulletFieldEntity extends Entity {
+    private final BulletField bulletField;
     
-    public BulletEntity(Entity parent) {
-        super(Core.DATA_PATH + "/spine/blast.json", "blue", GameState.twoColorPolygonBatch);
-        this.parent = parent;
-        getAnimationState().getCurrent(0).setLoop(false);
+    public BulletFieldEntity(BulletField bulletField) {
+        this.bulletField = bulletField;
         setDepth(10);
+        setCollisionCategory(CollisionCategory.NONE);
     }
     
     @Override
-    public void actSub(float delta) {
-        if (getX() + BORDER < 0.0f || getX() - BORDER > GameState.GAME_WIDTH || getY() + BORDER < 0.0f || getY() - BORDER > GameState.GAME_HEIGHT) {
-            dispose();
-        }
-    }
-
-    @Override
-    public void drawSub(SpriteBatch spriteBatch, float delta) {
+    public void create() {
     }
 
     @Override
-    public void create() {
+    public void act(float delta) {
     }
 
     @Override
@@ -61,19 +57,20 @@ public class BulletEntity extends SpineTwoColorEntity {
     }
 
     @Override
-    public void destroy() {
+    public void draw(SpriteBatch spriteBatch, float delta) {
+        bulletField.draw(GameState.twoColorPolygonBatch, GameState.entityManager.getViewBounds(), GameState.entityManager.getCullMargin());
     }
 
     @Override
-    public void collision(Entity other) {
+    public int getBatchType() {
+        return RenderQueue.TWO_COLOR_BATCH;
     }
 
-    public Entity getParent() {
-        return parent;
+    @Override
+    public void destroy() {
     }
 
-    public void setParent(Entity parent) {
-        this.parent = parent;
+    @Override
+    public void collision(Entity other) {
     }
-    
 }
@@ -28,17 +28,32 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.MathUtils;
 import com.ray3k.blastius.Core;
 import com.ray3k.blastius.Entity;
+import com.ray3k.blastius.SkeletonArchetype;
 import com.ray3k.blastius.SpineTwoColorEntity;
 import com.ray3k.blastius.states.GameState;
 
 public class CoinEntity extends SpineTwoColorEntity {
+    private static final float DESPAWN_MARGIN = 50.0f;
+    public static boolean usingFlipbook = true;
     private int bounces;
     public static final int MAX_BOUNCES = 0;
+    private static SkeletonArchetype archetype;
 
     public CoinEntity() {
-        super(Core.DATA_PATH + "/spine/coin.json", "animation", GameState.twoColorPolygonBatch);
-        setMotion(200.0f, MathUtils.random(360.0f));
+        super(getCoinArchetype(), "animation", GameState.twoColorPolygonBatch);
+        setFlipbook(Core.flipbooks.get("coin"));
         setDepth(100);
+        setCollisionCategory(CollisionCategory.PICKUP);
+        setCollisionMask(CollisionCategory.PLAYER);
+        setCheckingCollisions(true);
+        setDespawnMargin(DESPAWN_MARGIN);
+    }
+    
+    public static SkeletonArchetype getCoinArchetype() {
+        if (archetype == null) {
+            archetype = Core.archetypes.get(Core.DATA_PATH + "/spine/coin.json");
+        }
+        return archetype;
     }
     
     @Override
@@ -66,12 +81,18 @@ public class CoinEntity extends SpineTwoColorEntity {
         }
     }
 
+    @Override
+    public boolean isUsingFlipbook() {
+        return usingFlipbook;
+    }
+
     @Override
     public void drawSub(SpriteBatch spriteBatch, float delta) {
     }
 
     @Override
     public void create() {
+        setMotion(200.0f, MathUtils.random(360.0f));
     }
 
     @Override
@@ -82,6 +103,12 @@ public class CoinEntity extends SpineTwoColorEntity {
     public void destroy() {
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        bounces = 0;
+    }
+
     @Override
     public void collision(Entity other) {
     }
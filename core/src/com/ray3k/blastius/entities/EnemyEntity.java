@@ -27,9 +27,15 @@ package com.ray3k.blastius.entities;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.SkeletonData;
+import com.ray3k.blastius.BakedAnimation;
 import com.ray3k.blastius.Core;
 import com.ray3k.blastius.Entity;
+import com.ray3k.blastius.HitTracker;
+import com.ray3k.blastius.MovementPath;
+import com.ray3k.blastius.SkeletonArchetype;
 import com.ray3k.blastius.SpineTwoColorEntity;
 import com.ray3k.blastius.states.EditorState.EntityType;
 import com.ray3k.blastius.states.EditorState.PatternType;
@@ -45,15 +51,31 @@ public class EnemyEntity extends SpineTwoColorEntity {
     private float bulletTimer;
     private static final float BULLET_SPEED = 100.0f;
     private int coins;
-    private Array<TracerEntity> collisionList;
+    private HitTracker tracerHits;
+    private BakedAnimation pattern;
+    private float[] patternBounds;
+    private float patternTime;
+    private MovementPath path;
+    private float spawnX;
+    private float spawnY;
+    private float exitTime;
+    private final Vector2 pathPosition = new Vector2();
+    private static ObjectMap<String, BakedAnimation> patterns;
+    private static ObjectMap<String, MovementPath> paths;
+    private static final int PATH_FRAME_INTERVAL = 10;
+    private static SkeletonArchetype archetype;
+    private static Animation hurtAnimation;
 
     public EnemyEntity(EntityType enemyType, PatternType patternType) {
-        super(Core.DATA_PATH + "/spine/enemy.json", "normal", GameState.twoColorPolygonBatch);
-        getAnimationState().getData().setDefaultMix(0.0f);
+        super(getEnemyArchetype(), "normal", GameState.twoColorPolygonBatch);
         this.enemyType = enemyType;
         this.patternType = patternType;
         
-        collisionList = new  Array<TracerEntity>();
+        tracerHits = new HitTracker(GameState.entityManager);
+        
+        setCollisionCategory(CollisionCategory.ENEMY);
+        setCollisionMask(CollisionCategory.PLAYER | CollisionCategory.PLAYER_BULLET | CollisionCategory.TRACER);
+        setCheckingCollisions(true);
         
         setMotion(100.0f, 270.0f);
         firing = false;
@@ -108,7 +130,7 @@ public class EnemyEntity extends SpineTwoColorEntity {
         
         health *= GameState.enemyHealthMultiplier;
         
-        getSkeleton().setSkin(skin);
+        setSkin(skin);
         
         String animation = "";
         switch(patternType) {
@@ -146,7 +168,74 @@ public class EnemyEntity extends SpineTwoColorEntity {
                 animation = "wave";
                 break;
         }
-        getAnimationState().setAnimation(0, animation, true);
+        
+        pattern = patterns.get(animation);
+        patternBounds = pattern.getBounds(skin);
+        path = paths.get(animation);
+    }
+    
+    /**
+     * Samples every animation of the enemy skeleton at the simulation tick
+     * rate. Enemies play their movement pattern back from these tables instead
+     * of evaluating the animation timelines. A movement path is fit to each
+     * pattern; it places the enemy and predicts when it leaves the world. The
+     * tables are only built once.
+     * Enemies switch animations without mixing, so the shared archetype's
+     * default mix is cleared here as well.
+     */
+    public static void bakePatterns() {
+        if (patterns != null) {
+            return;
+        }
+        
+        archetype = Core.archetypes.get(Core.DATA_PATH + "/spine/enemy.json");
+        archetype.setDefaultMix(0.0f);
+        hurtAnimation = archetype.getAnimation("hurt");
+        
+        SkeletonData skeletonData = archetype.getSkeletonData();
+        patterns = new ObjectMap<String, BakedAnimation>();
+        paths = new ObjectMap<String, MovementPath>();
+        for (Animation animation : skeletonData.getAnimations()) {
+            BakedAnimation bakedAnimation = new BakedAnimation(skeletonData, animation, Core.MS_PER_UPDATE / 1000.0f);
+            patterns.put(animation.getName(), bakedAnimation);
+            paths.put(animation.getName(), new MovementPath(bakedAnimation, PATH_FRAME_INTERVAL));
+        }
+    }
+
+    public static SkeletonArchetype getEnemyArchetype() {
+        bakePatterns();
+        return archetype;
+    }
+
+    /**
+     * Places the enemy on its movement path. The skeleton drifts from the
+     * spawn position and plays the baked pattern for the visuals and the
+     * collision box.
+     */
+    @Override
+    public void updatePose(float delta) {
+        patternTime += delta;
+        float skeletonX = spawnX + getXspeed() * patternTime;
+        float skeletonY = spawnY + getYspeed() * patternTime;
+        
+        int frame = pattern.getFrame(patternTime);
+        getSkeleton().setPosition(skeletonX, skeletonY);
+        pattern.apply(getSkeleton(), frame);
+        invalidateShapes();
+        
+        getPathPosition(patternTime, pathPosition);
+        setPosition(pathPosition.x, pathPosition.y);
+        
+        int offset = frame * 4;
+        setCollisionBounds(skeletonX + patternBounds[offset], skeletonY + patternBounds[offset + 1], skeletonX + patternBounds[offset + 2], skeletonY + patternBounds[offset + 3]);
+    }
+    
+    /**
+     * Writes where the enemy's path places it the given number of seconds
+     * after it was spawned.
+     */
+    public Vector2 getPathPosition(float time, Vector2 out) {
+        return path.getPosition(spawnX, spawnY, getXspeed(), getYspeed(), time, out);
     }
     
     private static Vector2 temp1 = new Vector2();
@@ -154,55 +243,24 @@ public class EnemyEntity extends SpineTwoColorEntity {
     
     @Override
     public void actSub(float delta) {
-        float x = getSkeletonBounds().getMinX() + getSkeletonBounds().getWidth() / 2.0f;
-        float y = getSkeletonBounds().getMinY() + getSkeletonBounds().getHeight() / 2.0f;
-        
-        if (getSkeletonBounds().getMaxY() < 0.0f) {
+        if (patternTime >= exitTime) {
             dispose();
+            return;
         }
         
+        float x = getCollisionBox().x + getCollisionBox().width / 2.0f;
+        float y = getCollisionBox().y + getCollisionBox().height / 2.0f;
+        
         if (firing) {
             bulletTimer -= delta;
             if (bulletTimer < 0) {
                 bulletTimer = bulletTime;
                 
-                BulletEntity bullet = new BulletEntity(this);
                 temp1.x = x;
                 temp1.y = y;
                 temp2.x = GameState.player.getX();
                 temp2.y = GameState.player.getY();
-                bullet.setMotion(BULLET_SPEED, temp2.sub(temp1).angle());
-                bullet.setPosition(x, y);
-                bullet.getAnimationState().setAnimation(0, "red", false);
-                GameState.entityManager.addEntity(bullet);
-            }
-        }
-        
-        if (getSkeletonBounds().getMinY() + getSkeletonBounds().getHeight() / 2.0f < GameState.GAME_HEIGHT) {
-            for (Entity entity : GameState.entityManager.getEntities()) {
-                if (entity instanceof BulletEntity) {
-                    BulletEntity bullet = (BulletEntity) entity;
-                    if (bullet.getParent().getClass().equals(PlayerEntity.class)) {
-                        if (getSkeletonBounds().aabbIntersectsSkeleton(bullet.getSkeletonBounds())) {
-                            health -= 100;
-                            getAnimationState().setAnimation(1, "hurt", false);
-                            checkHealth();
-                            bullet.dispose();
-                            break;
-                        }
-                    }
-                } else if (entity instanceof TracerEntity) {
-                    TracerEntity tracer = (TracerEntity) entity;
-                    if (!collisionList.contains(tracer, false)) {
-                        if (getSkeletonBounds().aabbIntersectsSkeleton(tracer.getSkeletonBounds())) {
-                            health -= 50;
-                            getAnimationState().setAnimation(1, "hurt", false);
-                            checkHealth();
-                            collisionList.add(tracer);
-                            break;
-                        }
-                    }
-                }
+                GameState.bulletField.emit(x, y, BULLET_SPEED, temp2.sub(temp1).angle(), CollisionCategory.ENEMY_BULLET, this, "red");
             }
         }
     }
@@ -220,17 +278,17 @@ public class EnemyEntity extends SpineTwoColorEntity {
                     break;
             }
             
-            float x = getSkeletonBounds().getMinX() + getSkeletonBounds().getWidth() / 2.0f;
-            float y = getSkeletonBounds().getMinY() + getSkeletonBounds().getHeight() / 2.0f;
+            float x = getCollisionBox().x + getCollisionBox().width / 2.0f;
+            float y = getCollisionBox().y + getCollisionBox().height / 2.0f;
             
             for (int i = 0; i < coins; i++) {
-                CoinEntity coin = new CoinEntity();
+                CoinEntity coin = GameState.coinPool.obtain();
                 coin.setPosition(x, y);
                 GameState.entityManager.addEntity(coin);
             }
 
             if (MathUtils.randomBoolean(.02f)) {
-                PowerUpEntity powerup = new PowerUpEntity();
+                PowerUpEntity powerup = GameState.powerUpPool.obtain();
                 powerup.setPosition(x, y);
                 GameState.entityManager.addEntity(powerup);
             }
@@ -243,6 +301,9 @@ public class EnemyEntity extends SpineTwoColorEntity {
 
     @Override
     public void create() {
+        spawnX = getX();
+        spawnY = getY();
+        exitTime = path.getExitTime(spawnX, spawnY, getXspeed(), getYspeed(), -BORDER, -BORDER, GameState.GAME_WIDTH + BORDER, GameState.GAME_HEIGHT + BORDER);
     }
 
     @Override
@@ -253,8 +314,35 @@ public class EnemyEntity extends SpineTwoColorEntity {
     public void destroy() {
     }
 
+    @Override
+    public boolean bulletCollision() {
+        if (getCollisionBox().y + getCollisionBox().height / 2.0f >= GameState.GAME_HEIGHT) {
+            return false;
+        }
+        
+        health -= 100;
+        getAnimationState().setAnimation(1, hurtAnimation, false);
+        checkHealth();
+        return true;
+    }
+    
     @Override
     public void collision(Entity other) {
+        if (getCollisionBox().y + getCollisionBox().height / 2.0f >= GameState.GAME_HEIGHT) {
+            return;
+        }
+        
+        switch (other.getCollisionCategory()) {
+            case CollisionCategory.TRACER:
+                TracerEntity tracer = (TracerEntity) other;
+                if (!tracerHits.contains(tracer) && overlapsShape(tracer)) {
+                    health -= 50;
+                    getAnimationState().setAnimation(1, hurtAnimation, false);
+                    checkHealth();
+                    tracerHits.add(tracer);
+                }
+                break;
+        }
     }
 
 }
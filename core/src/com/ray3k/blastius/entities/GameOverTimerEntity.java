@@ -35,6 +35,7 @@ public class GameOverTimerEntity extends Entity {
     
     public GameOverTimerEntity(float time) {
         this.time = time;
+        setCollisionCategory(CollisionCategory.NONE);
     }
     
     @Override
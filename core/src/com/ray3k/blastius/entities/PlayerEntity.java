@@ -32,6 +32,7 @@ import com.esotericsoftware.spine.AnimationState;
 import com.ray3k.blastius.Core;
 import com.ray3k.blastius.Entity;
 import com.ray3k.blastius.Maths;
+import com.ray3k.blastius.SkeletonArchetype;
 import com.ray3k.blastius.SpineTwoColorEntity;
 import com.ray3k.blastius.states.GameState;
 
@@ -42,9 +43,10 @@ public class PlayerEntity extends SpineTwoColorEntity {
     private static final float BULLET_SPEED = 400.0f;
     private float bulletTimer;
     private int powerLevel;
+    private static SkeletonArchetype archetype;
 
     public PlayerEntity() {
-        super(Core.DATA_PATH + "/spine/player.json", "normal", GameState.twoColorPolygonBatch);
+        super(getPlayerArchetype(), "normal", GameState.twoColorPolygonBatch);
         getAnimationState().getCurrent(0).setLoop(false);
         
         getAnimationState().addListener(new AnimationState.AnimationStateAdapter() {
@@ -59,6 +61,16 @@ public class PlayerEntity extends SpineTwoColorEntity {
         bulletTimer = BULLET_DELAY;
         powerLevel = 1;
         setDepth(-10);
+        setCollisionCategory(CollisionCategory.PLAYER);
+        setCollisionMask(CollisionCategory.ENEMY | CollisionCategory.ENEMY_BULLET | CollisionCategory.PICKUP);
+        setCheckingCollisions(true);
+    }
+    
+    public static SkeletonArchetype getPlayerArchetype() {
+        if (archetype == null) {
+            archetype = Core.archetypes.get(Core.DATA_PATH + "/spine/player.json");
+        }
+        return archetype;
     }
 
     @Override
@@ -121,52 +133,6 @@ public class PlayerEntity extends SpineTwoColorEntity {
 
                 fire();
             }
-
-            for (Entity entity : GameState.entityManager.getEntities()) {
-                if (entity instanceof BulletEntity) {
-                    BulletEntity bullet = (BulletEntity) entity;
-                    if (!bullet.getParent().equals(this)) {
-                        if (getSkeletonBounds().aabbIntersectsSkeleton(bullet.getSkeletonBounds())) {
-                            bullet.dispose();
-                            if (!getAnimationState().getCurrent(0).getAnimation().getName().equals("die")) {
-                                GameState.inst().playSound("explosion 2", .5f);
-                                setMotion(0.0f, 0.0f);
-                                getAnimationState().setAnimation(0, "die", false);
-                            }
-                        }
-                    }
-                } else if (entity instanceof EnemyEntity) {
-                    EnemyEntity enemy = (EnemyEntity) entity;
-                    if (getSkeletonBounds().aabbIntersectsSkeleton(enemy.getSkeletonBounds())) {
-                        enemy.dispose();
-                        if (!getAnimationState().getCurrent(0).getAnimation().getName().equals("die")) {
-                            GameState.inst().playSound("explosion 2", .5f);
-                            setMotion(0.0f, 0.0f);
-                            getAnimationState().setAnimation(0, "die", false);
-                        }
-                    }
-                } else if (entity instanceof PowerUpEntity) {
-                    
-                    PowerUpEntity powerup = (PowerUpEntity) entity;
-                    if (getSkeletonBounds().aabbIntersectsSkeleton(powerup.getSkeletonBounds())) {
-                        GameState.inst().playSound("powerup", .5f);
-                        powerup.dispose();
-                        if (powerLevel < 7) {
-                            powerLevel++;
-                        } else {
-                            GameState.inst().addScore(100);
-                        }
-                    }
-                } else if (entity instanceof CoinEntity) {
-                    
-                    CoinEntity coin = (CoinEntity) entity;
-                    if (getSkeletonBounds().aabbIntersectsSkeleton(coin.getSkeletonBounds())) {
-                        GameState.inst().playSound("coin", .5f);
-                        coin.dispose();
-                        GameState.inst().addScore(10);
-                    }
-                }
-            }
         }
     }
     
@@ -175,230 +141,107 @@ public class PlayerEntity extends SpineTwoColorEntity {
         
         switch (powerLevel) {
             case 1: 
-                BulletEntity bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
+                emit(getX(), getY(), 90.0f);
                 break;
             case 2:
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() - 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() + 10, getY());
-                GameState.entityManager.addEntity(bullet);
+                emit(getX() - 10, getY(), 90.0f);
+                emit(getX() + 10, getY(), 90.0f);
                 break;
             case 3:
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 75.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() - 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() + 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 105.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
+                emit(getX(), getY(), 75.0f);
+                emit(getX() - 10, getY(), 90.0f);
+                emit(getX() + 10, getY(), 90.0f);
+                emit(getX(), getY(), 105.0f);
                 break;
             case 4:
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 65.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 270.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
+                emit(getX(), getY(), 65.0f);
+                emit(getX(), getY(), 270.0f);
+                emit(getX(), getY(), 115.0f);
                 
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 115.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                TracerEntity tracer = new TracerEntity(this);
+                TracerEntity tracer = obtainTracer();
                 tracer.setPosition(getX() - 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() + 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 break;
             case 5:
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 65.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 270.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 115.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 10.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
+                emit(getX(), getY(), 65.0f);
+                emit(getX(), getY(), 270.0f);
+                emit(getX(), getY(), 115.0f);
+                emit(getX(), getY(), 10.0f);
+                emit(getX(), getY(), 170.0f);
                 
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 170.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() - 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() + 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 break;
             case 6:
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 55.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 270.0f);
-                bullet.setPosition(getX() - 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 270.0f);
-                bullet.setPosition(getX() + 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 125.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 10.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 170.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() - 20, getY() - 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() - 20, getY() + 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() + 20, getY() - 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() + 20, getY() + 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                tracer = new TracerEntity(this);
+                emit(getX(), getY(), 55.0f);
+                emit(getX() - 10, getY(), 270.0f);
+                emit(getX() + 10, getY(), 270.0f);
+                emit(getX(), getY(), 125.0f);
+                emit(getX(), getY(), 10.0f);
+                emit(getX(), getY(), 170.0f);
+                emit(getX() - 20, getY() - 10, 90.0f);
+                emit(getX() - 20, getY() + 10, 90.0f);
+                emit(getX() + 20, getY() - 10, 90.0f);
+                emit(getX() + 20, getY() + 10, 90.0f);
+                
+                tracer = obtainTracer();
                 tracer.setPosition(getX() - 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() + 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 break;
             case 7:
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 55.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 270.0f);
-                bullet.setPosition(getX() - 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 270.0f);
-                bullet.setPosition(getX() + 10, getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 125.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 10.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 170.0f);
-                bullet.setPosition(getX(), getY());
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() - 20, getY() - 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() - 20, getY() + 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() + 20, getY() - 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                bullet = new BulletEntity(this);
-                bullet.setMotion(BULLET_SPEED, 90.0f);
-                bullet.setPosition(getX() + 20, getY() + 10);
-                GameState.entityManager.addEntity(bullet);
-                
-                tracer = new TracerEntity(this);
+                emit(getX(), getY(), 55.0f);
+                emit(getX() - 10, getY(), 270.0f);
+                emit(getX() + 10, getY(), 270.0f);
+                emit(getX(), getY(), 125.0f);
+                emit(getX(), getY(), 10.0f);
+                emit(getX(), getY(), 170.0f);
+                emit(getX() - 20, getY() - 10, 90.0f);
+                emit(getX() - 20, getY() + 10, 90.0f);
+                emit(getX() + 20, getY() - 10, 90.0f);
+                emit(getX() + 20, getY() + 10, 90.0f);
+                
+                tracer = obtainTracer();
                 tracer.setPosition(getX() - 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() + 10, getY());
                 GameState.entityManager.addEntity(tracer);
                 
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() - 40, getY());
                 GameState.entityManager.addEntity(tracer);
                 
-                tracer = new TracerEntity(this);
+                tracer = obtainTracer();
                 tracer.setPosition(getX() + 40, getY());
                 GameState.entityManager.addEntity(tracer);
                 break;
         }
     }
 
+    private void emit(float x, float y, float direction) {
+        GameState.bulletField.emit(x, y, BULLET_SPEED, direction, CollisionCategory.PLAYER_BULLET, this, "blue");
+    }
+    
+    private TracerEntity obtainTracer() {
+        TracerEntity tracer = GameState.tracerPool.obtain();
+        tracer.setParent(this);
+        return tracer;
+    }
+
     @Override
     public void drawSub(SpriteBatch spriteBatch, float delta) {
     }
@@ -417,5 +260,49 @@ public class PlayerEntity extends SpineTwoColorEntity {
 
     @Override
     public void collision(Entity other) {
+        if (getAnimationState().getCurrent(0).getAnimation().getName().equals("die")) {
+            return;
+        }
+        
+        switch (other.getCollisionCategory()) {
+            case CollisionCategory.ENEMY:
+                EnemyEntity enemy = (EnemyEntity) other;
+                if (overlapsShape(enemy)) {
+                    enemy.dispose();
+                    die();
+                }
+                break;
+            case CollisionCategory.PICKUP:
+                if (other instanceof PowerUpEntity) {
+                    GameState.inst().playSound("powerup", .5f);
+                    other.dispose();
+                    if (powerLevel < 7) {
+                        powerLevel++;
+                    } else {
+                        GameState.inst().addScore(100);
+                    }
+                } else if (other instanceof CoinEntity) {
+                    GameState.inst().playSound("coin", .5f);
+                    other.dispose();
+                    GameState.inst().addScore(10);
+                }
+                break;
+        }
+    }
+    
+    @Override
+    public boolean bulletCollision() {
+        if (getAnimationState().getCurrent(0).getAnimation().getName().equals("die")) {
+            return false;
+        }
+        
+        die();
+        return true;
+    }
+    
+    private void die() {
+        GameState.inst().playSound("explosion 2", .5f);
+        setMotion(0.0f, 0.0f);
+        getAnimationState().setAnimation(0, "die", false);
     }
 }
@@ -28,16 +28,29 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.MathUtils;
 import com.ray3k.blastius.Core;
 import com.ray3k.blastius.Entity;
+import com.ray3k.blastius.SkeletonArchetype;
 import com.ray3k.blastius.SpineTwoColorEntity;
 import com.ray3k.blastius.states.GameState;
 
 public class PowerUpEntity extends SpineTwoColorEntity {
+    private static final float DESPAWN_MARGIN = 50.0f;
     private int bounces;
     public static final int MAX_BOUNCES = 3;
+    private static SkeletonArchetype archetype;
 
     public PowerUpEntity() {
-        super(Core.DATA_PATH + "/spine/powerup.json", "animation", GameState.twoColorPolygonBatch);
-        setMotion(200.0f, MathUtils.random(360.0f));
+        super(getPowerUpArchetype(), "animation", GameState.twoColorPolygonBatch);
+        setCollisionCategory(CollisionCategory.PICKUP);
+        setCollisionMask(CollisionCategory.PLAYER);
+        setCheckingCollisions(true);
+        setDespawnMargin(DESPAWN_MARGIN);
+    }
+    
+    public static SkeletonArchetype getPowerUpArchetype() {
+        if (archetype == null) {
+            archetype = Core.archetypes.get(Core.DATA_PATH + "/spine/powerup.json");
+        }
+        return archetype;
     }
     
     @Override
@@ -71,6 +84,7 @@ public class PowerUpEntity extends SpineTwoColorEntity {
 
     @Override
     public void create() {
+        setMotion(200.0f, MathUtils.random(360.0f));
     }
 
     @Override
@@ -81,6 +95,12 @@ public class PowerUpEntity extends SpineTwoColorEntity {
     public void destroy() {
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        bounces = 0;
+    }
+
     @Override
     public void collision(Entity other) {
     }
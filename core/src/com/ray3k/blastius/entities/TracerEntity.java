@@ -28,18 +28,26 @@ import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.esotericsoftware.spine.AnimationState;
 import com.ray3k.blastius.Core;
 import com.ray3k.blastius.Entity;
+import com.ray3k.blastius.SkeletonArchetype;
 import com.ray3k.blastius.SpineTwoColorEntity;
 import com.ray3k.blastius.states.GameState;
 
 public class TracerEntity extends SpineTwoColorEntity {
-    private Entity parent;
+    private static final float DESPAWN_MARGIN = 50.0f;
+    public static boolean usingFlipbook = true;
+    private long parent;
+    private static SkeletonArchetype archetype;
     
-    public TracerEntity(Entity parent) {
-        super(Core.DATA_PATH + "/spine/tracer.json", "animation", GameState.twoColorPolygonBatch);
-        this.parent = parent;
-        getSkeleton().setSkin("blue");
+    public TracerEntity() {
+        super(getTracerArchetype(), "animation", GameState.twoColorPolygonBatch);
+        setFlipbook(Core.flipbooks.get("tracer"));
+        setSkin("blue");
         getAnimationState().getCurrent(0).setLoop(false);
         setDepth(10);
+        setCollisionCategory(CollisionCategory.TRACER);
+        setCollisionMask(CollisionCategory.ENEMY);
+        setCheckingCollisions(true);
+        setDespawnMargin(DESPAWN_MARGIN);
         
         getAnimationState().addListener(new AnimationState.AnimationStateAdapter() {
             @Override
@@ -49,11 +57,28 @@ public class TracerEntity extends SpineTwoColorEntity {
             
         });
     }
+    
+    public static SkeletonArchetype getTracerArchetype() {
+        if (archetype == null) {
+            archetype = Core.archetypes.get(Core.DATA_PATH + "/spine/tracer.json");
+        }
+        return archetype;
+    }
+    
+    public TracerEntity(Entity parent) {
+        this();
+        setParent(parent);
+    }
 
     @Override
     public void actSub(float delta) {
     }
 
+    @Override
+    public boolean isUsingFlipbook() {
+        return usingFlipbook;
+    }
+
     @Override
     public void drawSub(SpriteBatch spriteBatch, float delta) {
     }
@@ -70,8 +95,27 @@ public class TracerEntity extends SpineTwoColorEntity {
     public void destroy() {
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        getAnimationState().getCurrent(0).setLoop(false);
+        parent = 0;
+    }
+
     @Override
     public void collision(Entity other) {
     }
 
+    /**
+     * Returns the entity that fired the tracer, or null if it has been
+     * removed.
+     */
+    public Entity getParent() {
+        return GameState.entityManager.resolve(parent);
+    }
+
+    public void setParent(Entity parent) {
+        this.parent = parent.getHandle();
+    }
+
 }
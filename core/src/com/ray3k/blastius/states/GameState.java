@@ -33,6 +33,7 @@ import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.scenes.scene2d.Stage;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
 import com.badlogic.gdx.scenes.scene2d.ui.Skin;
@@ -43,13 +44,20 @@ import com.badlogic.gdx.utils.JsonWriter;
 import com.badlogic.gdx.utils.viewport.StretchViewport;
 import com.badlogic.gdx.utils.viewport.Viewport;
 import com.esotericsoftware.spine.utils.TwoColorPolygonBatch;
+import com.ray3k.blastius.BulletField;
 import com.ray3k.blastius.Core;
 import com.ray3k.blastius.EntityManager;
+import com.ray3k.blastius.EntityPool;
 import com.ray3k.blastius.InputManager;
+import com.ray3k.blastius.RecordingBatch;
 import com.ray3k.blastius.State;
+import com.ray3k.blastius.entities.BulletFieldEntity;
+import com.ray3k.blastius.entities.CoinEntity;
+import com.ray3k.blastius.entities.CollisionCategory;
 import com.ray3k.blastius.entities.EnemyEntity;
 import com.ray3k.blastius.entities.PlayerEntity;
 import com.ray3k.blastius.entities.PowerUpEntity;
+import com.ray3k.blastius.entities.TracerEntity;
 import com.ray3k.blastius.states.EditorState.EditorEntity;
 
 public class GameState extends State {
@@ -58,16 +66,26 @@ public class GameState extends State {
     private static int highscore = 0;
     private OrthographicCamera gameCamera;
     private Viewport gameViewport;
+    private Rectangle viewBounds;
     private InputManager inputManager;
     private Skin skin;
     private Stage stage;
     private Table table;
     private Label scoreLabel;
     public static EntityManager entityManager;
+    public static BulletField bulletField;
+    private static final float BULLET_RADIUS = 8.0f;
+    private static final float BULLET_MARGIN = 50.0f;
     public static TextureAtlas spineAtlas;
     public static final float GAME_WIDTH = 800.0f;
     public static final float GAME_HEIGHT = 600.0f;
     public static TwoColorPolygonBatch twoColorPolygonBatch;
+    public static EntityPool<TracerEntity> tracerPool;
+    public static EntityPool<CoinEntity> coinPool;
+    public static EntityPool<PowerUpEntity> powerUpPool;
+    private static final int TRACER_POOL_SIZE = 64;
+    private static final int COIN_POOL_SIZE = 128;
+    private static final int POWER_UP_POOL_SIZE = 4;
     private float formationTimer;
     private float formationTime;
     private static final float FORMATION_TIME_DECAY = .009f;
@@ -100,6 +118,7 @@ public class GameState extends State {
         gameViewport.apply();
         
         gameCamera.position.set(gameCamera.viewportWidth / 2, gameCamera.viewportHeight / 2, 0);
+        viewBounds = new Rectangle();
         
         skin = Core.assetManager.get(Core.DATA_PATH + "/ui/blastius.json", Skin.class);
         stage = new Stage(new StretchViewport(GameState.GAME_WIDTH, GameState.GAME_HEIGHT));
@@ -113,17 +132,28 @@ public class GameState extends State {
         table.setFillParent(true);
         stage.addActor(table);
         
-        entityManager = new EntityManager();
+        entityManager = new EntityManager(GAME_WIDTH, GAME_HEIGHT);
+        entityManager.setViewBounds(viewBounds);
+        
+        bulletField = new BulletField(entityManager, Core.flipbooks.get("blast"), BULLET_RADIUS, GAME_WIDTH, GAME_HEIGHT, BULLET_MARGIN);
+        bulletField.addTarget(CollisionCategory.PLAYER_BULLET, CollisionCategory.ENEMY);
+        bulletField.addTarget(CollisionCategory.ENEMY_BULLET, CollisionCategory.PLAYER);
+        entityManager.addEntity(new BulletFieldEntity(bulletField));
         
         createStageElements();
         
-        twoColorPolygonBatch = new TwoColorPolygonBatch(3100);
+        if (Core.recordingBatch == null) {
+            twoColorPolygonBatch = new TwoColorPolygonBatch(3100);
+        }
+        
+        createPools();
+        EnemyEntity.bakePatterns();
         
         player = new PlayerEntity();
         player.setPosition(150.0f, 150.0f);
         entityManager.addEntity(player);
         
-        PowerUpEntity powerup = new PowerUpEntity();
+        PowerUpEntity powerup = powerUpPool.obtain();
         powerup.setPosition(MathUtils.random(GAME_WIDTH), MathUtils.random(GAME_HEIGHT));
         entityManager.addEntity(powerup);
         
@@ -133,6 +163,32 @@ public class GameState extends State {
         enemyHealthMultiplier = 1.0f;
     }
     
+    private void createPools() {
+        tracerPool = new EntityPool<TracerEntity>(TRACER_POOL_SIZE) {
+            @Override
+            protected TracerEntity createEntity() {
+                return new TracerEntity();
+            }
+        };
+        tracerPool.fill(TRACER_POOL_SIZE);
+        
+        coinPool = new EntityPool<CoinEntity>(COIN_POOL_SIZE) {
+            @Override
+            protected CoinEntity createEntity() {
+                return new CoinEntity();
+            }
+        };
+        coinPool.fill(COIN_POOL_SIZE);
+        
+        powerUpPool = new EntityPool<PowerUpEntity>(POWER_UP_POOL_SIZE) {
+            @Override
+            protected PowerUpEntity createEntity() {
+                return new PowerUpEntity();
+            }
+        };
+        powerUpPool.fill(POWER_UP_POOL_SIZE);
+    }
+    
     private void createStageElements() {
         Table root = new Table();
         root.setFillParent(true);
@@ -148,14 +204,27 @@ public class GameState extends State {
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
         
         gameCamera.update();
+        float viewWidth = gameCamera.viewportWidth * gameCamera.zoom;
+        float viewHeight = gameCamera.viewportHeight * gameCamera.zoom;
+        viewBounds.set(gameCamera.position.x - viewWidth / 2.0f, gameCamera.position.y - viewHeight / 2.0f, viewWidth, viewHeight);
 //        spriteBatch.setProjectionMatrix(gameCamera.combined);
 //        spriteBatch.begin();
 //        spriteBatch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
-        twoColorPolygonBatch.setProjectionMatrix(gameCamera.combined);
-        twoColorPolygonBatch.begin();
-        twoColorPolygonBatch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
-        entityManager.draw(spriteBatch, delta);
-        twoColorPolygonBatch.end();
+        if (Core.recordingBatch != null) {
+            RecordingBatch recordingBatch = Core.recordingBatch;
+            recordingBatch.setProjectionMatrix(gameCamera.combined);
+            recordingBatch.begin();
+            recordingBatch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+            entityManager.draw(spriteBatch, delta);
+            recordingBatch.end();
+            recordingBatch.endFrame();
+        } else {
+            twoColorPolygonBatch.setProjectionMatrix(gameCamera.combined);
+            twoColorPolygonBatch.begin();
+            twoColorPolygonBatch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE_MINUS_SRC_ALPHA);
+            entityManager.draw(spriteBatch, delta);
+            twoColorPolygonBatch.end();
+        }
 //        spriteBatch.end();
 //        spriteBatch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
         
@@ -181,6 +250,7 @@ public class GameState extends State {
     @Override
     public void act(float delta) {
         entityManager.act(delta);
+        bulletField.act(delta);
         
         stage.act(delta);
         
@@ -20,7 +20,10 @@ import com.badlogic.gdx.scenes.scene2d.utils.Drawable;
 import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Scaling;
 import com.badlogic.gdx.utils.viewport.ScreenViewport;
+import com.esotericsoftware.spine.SkeletonData;
 import com.ray3k.blastius.Core;
+import com.ray3k.blastius.Flipbook;
+import com.ray3k.blastius.SkeletonArchetype;
 import com.ray3k.blastius.State;
 
 public class LoadingState extends State {
@@ -81,6 +84,7 @@ public class LoadingState extends State {
                 public boolean act(float delta) {
                     if (nextState != null) {
                         finishedLoading = true;
+                        createArchetypes();
                         packPixmaps();
                         Core.stateManager.loadState(nextState);
                     }
@@ -120,6 +124,14 @@ public class LoadingState extends State {
         return returnValue;
     }
     
+    private void createArchetypes() {
+        for (String fileName : Core.assetManager.getAssetNames()) {
+            if (Core.assetManager.getAssetType(fileName) == SkeletonData.class && !Core.archetypes.containsKey(fileName)) {
+                Core.archetypes.put(fileName, new SkeletonArchetype(Core.assetManager.get(fileName, SkeletonData.class), .25f));
+            }
+        }
+    }
+    
     private void packPixmaps() {
         for (String directory : Core.imagePacks.keys()) {
             for (String name : Core.imagePacks.get(directory)) {
@@ -128,7 +140,15 @@ public class LoadingState extends State {
             }
         }
         
+        for (Flipbook flipbook : Core.flipbooks.values()) {
+            flipbook.bake(Core.pixmapPacker);
+        }
+        
         Core.generatedAtlas = Core.pixmapPacker.generateTextureAtlas(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear, false);
+        
+        for (Flipbook flipbook : Core.flipbooks.values()) {
+            flipbook.resolve(Core.generatedAtlas);
+        }
     }
 
     @Override
@@ -0,0 +1,422 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.Animation.MixDirection;
+import com.esotericsoftware.spine.Animation.MixPose;
+import com.esotericsoftware.spine.Skeleton;
+import com.esotericsoftware.spine.SkeletonBounds;
+import com.esotericsoftware.spine.SkeletonData;
+import com.esotericsoftware.spine.SkeletonJson;
+import com.esotericsoftware.spine.Skin;
+import com.esotericsoftware.spine.attachments.AttachmentLoader;
+import com.esotericsoftware.spine.attachments.BoundingBoxAttachment;
+import com.esotericsoftware.spine.attachments.ClippingAttachment;
+import com.esotericsoftware.spine.attachments.MeshAttachment;
+import com.esotericsoftware.spine.attachments.PathAttachment;
+import com.esotericsoftware.spine.attachments.PointAttachment;
+import com.esotericsoftware.spine.attachments.RegionAttachment;
+import java.io.File;
+import java.util.Random;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CollisionShapeTest {
+    private static final float[] SQUARE = {0.0f, 0.0f, 10.0f, 0.0f, 10.0f, 10.0f, 0.0f, 10.0f};
+    private static final float EPSILON = 0.001f;
+    private static SkeletonData enemyData;
+    private static SkeletonData playerData;
+    
+    /**
+     * Loads the game's skeletons with their bounding boxes only, so no atlas
+     * or GL context is needed.
+     */
+    @BeforeClass
+    public static void loadSkeletons() {
+        SkeletonJson skeletonJson = new SkeletonJson(new BoundingBoxLoader());
+        enemyData = skeletonJson.readSkeletonData(new FileHandle(new File("assets/" + Core.DATA_PATH + "/spine/enemy.json")));
+        playerData = skeletonJson.readSkeletonData(new FileHandle(new File("assets/" + Core.DATA_PATH + "/spine/player.json")));
+    }
+    
+    /**
+     * Builds a shape whose hulls are given directly in world space, so the
+     * vertices double as the world vertex buffer.
+     */
+    private static CollisionShape shape(float[]... hulls) {
+        int[] slots = new int[hulls.length];
+        int[] offsets = new int[hulls.length];
+        int[] counts = new int[hulls.length];
+        int offset = 0;
+        for (int i = 0; i < hulls.length; i++) {
+            slots[i] = i;
+            offsets[i] = offset;
+            counts[i] = hulls[i].length;
+            offset += hulls[i].length;
+        }
+        return new CollisionShape(slots, offsets, counts, vertices(hulls));
+    }
+    
+    private static boolean overlaps(float[][] hulls1, float[][] hulls2) {
+        CollisionShape shape1 = shape(hulls1);
+        CollisionShape shape2 = shape(hulls2);
+        return CollisionShape.overlaps(shape1, vertices(hulls1), shape2, vertices(hulls2));
+    }
+    
+    private static float[] vertices(float[][] hulls) {
+        int vertexCount = 0;
+        for (float[] hull : hulls) {
+            vertexCount += hull.length;
+        }
+        
+        float[] vertices = new float[vertexCount];
+        int offset = 0;
+        for (float[] hull : hulls) {
+            System.arraycopy(hull, 0, vertices, offset, hull.length);
+            offset += hull.length;
+        }
+        return vertices;
+    }
+    
+    private static float[] box(float x, float y, float width, float height) {
+        return new float[] {x, y, x + width, y, x + width, y + height, x, y + height};
+    }
+    
+    @Test
+    public void overlappingHullsOverlap() {
+        float[] triangle = {5.0f, 5.0f, 20.0f, 5.0f, 12.0f, 20.0f};
+        assertTrue(overlaps(new float[][] {SQUARE}, new float[][] {triangle}));
+        assertTrue(overlaps(new float[][] {triangle}, new float[][] {SQUARE}));
+    }
+    
+    @Test
+    public void hullsWithOverlappingBoundsCanBeSeparated() {
+        //the triangles share a bounding box but are split along the diagonal
+        float[] lower = {0.0f, 0.0f, 10.0f, 0.0f, 0.0f, 9.0f};
+        float[] upper = {10.0f, 1.0f, 10.0f, 10.0f, 1.0f, 10.0f};
+        assertFalse(overlaps(new float[][] {lower}, new float[][] {upper}));
+        
+        float[] crossing = {8.0f, 1.0f, 10.0f, 10.0f, 0.0f, 10.0f};
+        assertTrue(overlaps(new float[][] {lower}, new float[][] {crossing}));
+    }
+    
+    @Test
+    public void anyHullOfEitherShapeCounts() {
+        float[] far = box(100.0f, 100.0f, 10.0f, 10.0f);
+        float[] near = box(8.0f, 8.0f, 10.0f, 10.0f);
+        assertFalse(overlaps(new float[][] {SQUARE}, new float[][] {far}));
+        assertTrue(overlaps(new float[][] {SQUARE}, new float[][] {far, near}));
+        assertTrue(overlaps(new float[][] {far, SQUARE}, new float[][] {near}));
+    }
+    
+    @Test
+    public void hullAgainstBox() {
+        float[] diamond = {5.0f, 0.0f, 10.0f, 5.0f, 5.0f, 10.0f, 0.0f, 5.0f};
+        CollisionShape shape = shape(diamond);
+        float[] worldVertices = vertices(new float[][] {diamond});
+        
+        assertTrue(CollisionShape.overlaps(shape, worldVertices, box(4.0f, 4.0f, 2.0f, 2.0f), 0, 8));
+        assertTrue(CollisionShape.overlaps(shape, worldVertices, box(-5.0f, -5.0f, 20.0f, 20.0f), 0, 8));
+        //inside the diamond's bounds but outside its corner
+        assertFalse(CollisionShape.overlaps(shape, worldVertices, box(0.0f, 0.0f, 2.0f, 2.0f), 0, 8));
+        assertFalse(CollisionShape.overlaps(shape, worldVertices, box(20.0f, 0.0f, 2.0f, 2.0f), 0, 8));
+    }
+    
+    @Test
+    public void boxAtAnOffsetInThePolygonArray() {
+        CollisionShape shape = shape(SQUARE);
+        float[] polygons = new float[16];
+        System.arraycopy(box(50.0f, 50.0f, 5.0f, 5.0f), 0, polygons, 0, 8);
+        System.arraycopy(box(5.0f, 5.0f, 2.0f, 2.0f), 0, polygons, 8, 8);
+        assertFalse(CollisionShape.overlaps(shape, SQUARE, polygons, 0, 8));
+        assertTrue(CollisionShape.overlaps(shape, SQUARE, polygons, 8, 8));
+    }
+    
+    @Test
+    public void hullsMatchTheBoundingBoxesInEveryPose() {
+        int hulls = 0;
+        for (SkeletonData skeletonData : new SkeletonData[] {enemyData, playerData}) {
+            for (Skin skin : skeletonData.getSkins()) {
+                CollisionShape shape = new CollisionShape(skeletonData, skin);
+                Skeleton skeleton = skeleton(skeletonData, skin);
+                SkeletonBounds bounds = new SkeletonBounds();
+                float[] worldVertices = new float[shape.getVertexCount()];
+                for (Animation animation : skeletonData.getAnimations()) {
+                    for (int i = 0; i < 4; i++) {
+                        pose(skeleton, animation, animation.getDuration() * i / 4.0f, 20.0f * i, -10.0f * i);
+                        bounds.update(skeleton, true);
+                        if (bounds.getPolygons().size == 0) {
+                            assertTrue(shape.isEmpty());
+                            continue;
+                        }
+                        
+                        assertEquals(1, bounds.getPolygons().size);
+                        shape.transform(skeleton, worldVertices);
+                        assertHullOf(bounds.getPolygons().first(), worldVertices);
+                        hulls++;
+                    }
+                }
+            }
+        }
+        assertTrue(hulls > 0);
+    }
+    
+    /**
+     * Checks that every hull vertex is a polygon vertex and that every polygon
+     * vertex is either a hull vertex or inside the hull.
+     */
+    private static void assertHullOf(FloatArray polygon, float[] hull) {
+        for (int i = 0; i < hull.length; i += 2) {
+            assertTrue(indexOf(polygon.items, polygon.size, hull[i], hull[i + 1]) != -1);
+        }
+        for (int i = 0; i < polygon.size; i += 2) {
+            float x = polygon.get(i), y = polygon.get(i + 1);
+            assertTrue(indexOf(hull, hull.length, x, y) != -1 || Intersector.isPointInPolygon(hull, 0, hull.length, x, y));
+        }
+    }
+    
+    private static int indexOf(float[] vertices, int count, float x, float y) {
+        for (int i = 0; i < count; i += 2) {
+            if (Math.abs(vertices[i] - x) < EPSILON && Math.abs(vertices[i + 1] - y) < EPSILON) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    @Test
+    public void collisionBoundsContainTheBoundingBoxes() {
+        for (Skin skin : enemyData.getSkins()) {
+            CollisionShape shape = new CollisionShape(enemyData, skin);
+            Skeleton skeleton = skeleton(enemyData, skin);
+            SkeletonBounds bounds = new SkeletonBounds();
+            TestEntity entity = new TestEntity("enemy", 0.0f, 0.0f);
+            for (Animation animation : enemyData.getAnimations()) {
+                for (int i = 0; i < 4; i++) {
+                    pose(skeleton, animation, animation.getDuration() * i / 4.0f, 100.0f, 50.0f);
+                    entity.setPosition(100.0f, 50.0f);
+                    CollisionShape.setCollisionBounds(entity, shape, skeleton);
+                    Rectangle box = entity.getCollisionBox();
+                    bounds.update(skeleton, true);
+                    if (shape.isEmpty()) {
+                        assertEquals(new Rectangle(100.0f, 50.0f, 0.0f, 0.0f), box);
+                    } else {
+                        assertTrue(box.x <= bounds.getMinX() + EPSILON);
+                        assertTrue(box.y <= bounds.getMinY() + EPSILON);
+                        assertTrue(box.x + box.width >= bounds.getMaxX() - EPSILON);
+                        assertTrue(box.y + box.height >= bounds.getMaxY() - EPSILON);
+                    }
+                }
+            }
+        }
+        
+        TestEntity entity = new TestEntity("shapeless", 0.0f, 0.0f);
+        entity.setPosition(5.0f, 6.0f);
+        CollisionShape.setCollisionBounds(entity, null, null);
+        assertEquals(new Rectangle(5.0f, 6.0f, 0.0f, 0.0f), entity.getCollisionBox());
+    }
+    
+    /**
+     * Poses pairs of skeletons near each other and compares the hull test with
+     * the bounding polygons kept by {@link SkeletonBounds}. Hulls of concave
+     * bounding boxes may only report more overlaps, never fewer.
+     */
+    @Test
+    public void overlapsAgreeWithSkeletonBounds() {
+        Random random = new Random(1);
+        Array<Skin> skins = new Array<Skin>();
+        Array<SkeletonData> skinData = new Array<SkeletonData>();
+        for (SkeletonData skeletonData : new SkeletonData[] {enemyData, playerData}) {
+            for (Skin skin : skeletonData.getSkins()) {
+                if (!new CollisionShape(skeletonData, skin).isEmpty()) {
+                    skins.add(skin);
+                    skinData.add(skeletonData);
+                }
+            }
+        }
+        
+        int overlaps = 0, misses = 0;
+        for (int i = 0; i < skins.size; i++) {
+            for (int j = 0; j < skins.size; j++) {
+                CollisionShape shape1 = new CollisionShape(skinData.get(i), skins.get(i));
+                CollisionShape shape2 = new CollisionShape(skinData.get(j), skins.get(j));
+                Skeleton skeleton1 = skeleton(skinData.get(i), skins.get(i));
+                Skeleton skeleton2 = skeleton(skinData.get(j), skins.get(j));
+                SkeletonBounds bounds1 = new SkeletonBounds();
+                SkeletonBounds bounds2 = new SkeletonBounds();
+                float[] worldVertices1 = new float[shape1.getVertexCount()];
+                float[] worldVertices2 = new float[shape2.getVertexCount()];
+                for (int trial = 0; trial < 20; trial++) {
+                    Array<Animation> animations1 = skinData.get(i).getAnimations();
+                    Array<Animation> animations2 = skinData.get(j).getAnimations();
+                    Animation animation1 = animations1.get(random.nextInt(animations1.size));
+                    Animation animation2 = animations2.get(random.nextInt(animations2.size));
+                    pose(skeleton1, animation1, random.nextFloat() * animation1.getDuration(), 0.0f, 0.0f);
+                    pose(skeleton2, animation2, random.nextFloat() * animation2.getDuration(), 0.0f, 0.0f);
+                    bounds1.update(skeleton1, true);
+                    bounds2.update(skeleton2, true);
+                    
+                    //move the second skeleton so its bounds land somewhere around the first
+                    float reachX = (bounds1.getWidth() + bounds2.getWidth()) / 2.0f;
+                    float reachY = (bounds1.getHeight() + bounds2.getHeight()) / 2.0f;
+                    float x = centerX(bounds1) - centerX(bounds2) + (random.nextFloat() * 2.4f - 1.2f) * reachX;
+                    float y = centerY(bounds1) - centerY(bounds2) + (random.nextFloat() * 2.4f - 1.2f) * reachY;
+                    skeleton2.setPosition(x, y);
+                    skeleton2.updateWorldTransform();
+                    bounds2.update(skeleton2, true);
+                    
+                    shape1.transform(skeleton1, worldVertices1);
+                    shape2.transform(skeleton2, worldVertices2);
+                    boolean hullsOverlap = CollisionShape.overlaps(shape1, worldVertices1, shape2, worldVertices2);
+                    boolean polygonsOverlap = overlaps(bounds1, bounds2);
+                    if (isConvex(bounds1) && isConvex(bounds2)) {
+                        assertEquals(polygonsOverlap, hullsOverlap);
+                    } else if (polygonsOverlap) {
+                        assertTrue(hullsOverlap);
+                    }
+                    
+                    if (polygonsOverlap) {
+                        overlaps++;
+                    } else {
+                        misses++;
+                    }
+                }
+            }
+        }
+        assertTrue(overlaps > 0);
+        assertTrue(misses > 0);
+    }
+    
+    /**
+     * Tests the bounding polygons directly: the bounds first, then a vertex of
+     * one polygon inside the other or any crossing edges. The edges are not
+     * tested with {@link SkeletonBounds#intersectsSegment(FloatArray, float, float, float, float)},
+     * which misses crossings of axis aligned edges to rounding.
+     */
+    private static boolean overlaps(SkeletonBounds bounds1, SkeletonBounds bounds2) {
+        if (!bounds1.aabbIntersectsSkeleton(bounds2)) {
+            return false;
+        }
+        
+        for (FloatArray polygon1 : bounds1.getPolygons()) {
+            for (FloatArray polygon2 : bounds2.getPolygons()) {
+                if (bounds1.containsPoint(polygon1, polygon2.get(0), polygon2.get(1)) || bounds2.containsPoint(polygon2, polygon1.get(0), polygon1.get(1))) {
+                    return true;
+                }
+                for (int i = 0; i < polygon1.size; i += 2) {
+                    int nextI = (i + 2) % polygon1.size;
+                    for (int j = 0; j < polygon2.size; j += 2) {
+                        int nextJ = (j + 2) % polygon2.size;
+                        if (Intersector.intersectSegments(polygon1.get(i), polygon1.get(i + 1), polygon1.get(nextI), polygon1.get(nextI + 1),
+                                polygon2.get(j), polygon2.get(j + 1), polygon2.get(nextJ), polygon2.get(nextJ + 1), null)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isConvex(SkeletonBounds bounds) {
+        for (FloatArray polygon : bounds.getPolygons()) {
+            float[] vertices = polygon.items;
+            int sign = 0;
+            for (int i = 0; i < polygon.size; i += 2) {
+                int next = (i + 2) % polygon.size, after = (i + 4) % polygon.size;
+                float cross = (vertices[next] - vertices[i]) * (vertices[after + 1] - vertices[next + 1]) - (vertices[next + 1] - vertices[i + 1]) * (vertices[after] - vertices[next]);
+                int crossSign = cross > 0.0f ? 1 : cross < 0.0f ? -1 : 0;
+                if (sign == 0) {
+                    sign = crossSign;
+                } else if (crossSign != 0 && crossSign != sign) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private static float centerX(SkeletonBounds bounds) {
+        return (bounds.getMinX() + bounds.getMaxX()) / 2.0f;
+    }
+    
+    private static float centerY(SkeletonBounds bounds) {
+        return (bounds.getMinY() + bounds.getMaxY()) / 2.0f;
+    }
+    
+    private static Skeleton skeleton(SkeletonData skeletonData, Skin skin) {
+        Skeleton skeleton = new Skeleton(skeletonData);
+        skeleton.setSkin(skin);
+        skeleton.setToSetupPose();
+        return skeleton;
+    }
+    
+    private static void pose(Skeleton skeleton, Animation animation, float time, float x, float y) {
+        skeleton.setToSetupPose();
+        animation.apply(skeleton, time, time, true, null, 1.0f, MixPose.setup, MixDirection.in);
+        skeleton.setPosition(x, y);
+        skeleton.updateWorldTransform();
+    }
+    
+    /**
+     * Creates bounding box attachments only.
+     */
+    private static class BoundingBoxLoader implements AttachmentLoader {
+        @Override
+        public RegionAttachment newRegionAttachment(Skin skin, String name, String path) {
+            return null;
+        }
+        
+        @Override
+        public MeshAttachment newMeshAttachment(Skin skin, String name, String path) {
+            return null;
+        }
+        
+        @Override
+        public BoundingBoxAttachment newBoundingBoxAttachment(Skin skin, String name) {
+            return new BoundingBoxAttachment(name);
+        }
+        
+        @Override
+        public ClippingAttachment newClippingAttachment(Skin skin, String name) {
+            return null;
+        }
+        
+        @Override
+        public PathAttachment newPathAttachment(Skin skin, String name) {
+            return null;
+        }
+        
+        @Override
+        public PointAttachment newPointAttachment(Skin skin, String name) {
+            return null;
+        }
+    }
+}
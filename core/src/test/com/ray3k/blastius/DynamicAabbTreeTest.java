@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DynamicAabbTreeTest {
+    private static final int ENTITIES = 400;
+    private static final int STEPS = 30;
+    private Random random;
+    private DynamicAabbTree tree;
+    private Array<TestEntity> live;
+    private Array<TestEntity> dead;
+    private int[] proxies;
+    
+    @Before
+    public void setUp() {
+        random = new Random(3);
+        tree = new DynamicAabbTree(16);
+        live = new Array<TestEntity>();
+        dead = new Array<TestEntity>();
+        proxies = new int[ENTITIES];
+        for (int i = 0; i < ENTITIES; i++) {
+            TestEntity entity = new TestEntity(Integer.toString(i), 2.0f + random.nextFloat() * 30.0f, 2.0f + random.nextFloat() * 30.0f);
+            entity.setCollisionCategory(1 << random.nextInt(3));
+            entity.getCollisionBox().setPosition(random.nextFloat() * 1000.0f, random.nextFloat() * 1000.0f);
+            proxies[i] = tree.createProxy(entity, entity.getCollisionBox());
+            live.add(entity);
+        }
+    }
+    
+    /**
+     * Moves every live entity by a small or large jump, destroys some proxies
+     * and recreates some of the destroyed ones.
+     */
+    private void churn() {
+        for (int i = 0; i < live.size; i++) {
+            TestEntity entity = live.get(i);
+            Rectangle box = entity.getCollisionBox();
+            float jump = random.nextInt(10) == 0 ? 300.0f : 10.0f;
+            box.setPosition(box.x + (random.nextFloat() - 0.5f) * jump, box.y + (random.nextFloat() - 0.5f) * jump);
+            tree.moveProxy(proxies[index(entity)], box);
+        }
+        
+        for (int i = 0; i < 20 && live.size > 0; i++) {
+            TestEntity entity = live.removeIndex(random.nextInt(live.size));
+            tree.destroyProxy(proxies[index(entity)]);
+            dead.add(entity);
+        }
+        
+        for (int i = 0; i < 15 && dead.size > 0; i++) {
+            TestEntity entity = dead.removeIndex(random.nextInt(dead.size));
+            proxies[index(entity)] = tree.createProxy(entity, entity.getCollisionBox());
+            live.add(entity);
+        }
+    }
+    
+    private static int index(TestEntity entity) {
+        return Integer.parseInt(entity.name);
+    }
+    
+    @Test
+    public void staysValidAndBalanced() {
+        for (int step = 0; step < STEPS; step++) {
+            churn();
+            assertEquals(live.size, tree.validate());
+            assertEquals(live.size * 2 - 1, tree.getNodeCount());
+            assertTrue("max balance " + tree.getMaxBalance(), tree.getMaxBalance() <= 1);
+            //an AVL tree with n leaves is at most about 1.44 log2(n) high
+            double bound = 1.45 * Math.log(live.size * 2) / Math.log(2.0);
+            assertTrue("height " + tree.getHeight(), tree.getHeight() <= bound);
+        }
+        
+        while (live.size > 0) {
+            tree.destroyProxy(proxies[index(live.pop())]);
+        }
+        assertEquals(0, tree.validate());
+        assertEquals(0, tree.getNodeCount());
+        assertEquals(0, tree.getHeight());
+    }
+    
+    @Test
+    public void queryRadiusMatchesBruteForce() {
+        Array<Entity> results = new Array<Entity>();
+        for (int step = 0; step < STEPS; step++) {
+            churn();
+            for (int query = 0; query < 20; query++) {
+                float x = random.nextFloat() * 1000.0f;
+                float y = random.nextFloat() * 1000.0f;
+                float radius = random.nextFloat() * 150.0f;
+                int mask = 1 + random.nextInt(7);
+                tree.queryRadius(x, y, radius, mask, results);
+                
+                Array<Entity> expected = new Array<Entity>();
+                for (TestEntity entity : live) {
+                    if ((entity.getCollisionCategory() & mask) != 0 && distanceSquared(x, y, entity.getCollisionBox()) <= radius * radius) {
+                        expected.add(entity);
+                    }
+                }
+                assertEquals(sortedNames(expected), sortedNames(results));
+            }
+        }
+    }
+    
+    @Test
+    public void queryNearestMatchesBruteForce() {
+        Array<Entity> results = new Array<Entity>();
+        for (int step = 0; step < STEPS; step++) {
+            churn();
+            for (int query = 0; query < 20; query++) {
+                float x = random.nextFloat() * 1000.0f;
+                float y = random.nextFloat() * 1000.0f;
+                int count = 1 + random.nextInt(10);
+                int mask = 1 + random.nextInt(7);
+                tree.queryNearest(x, y, count, mask, results);
+                
+                Array<Float> expected = new Array<Float>();
+                for (TestEntity entity : live) {
+                    if ((entity.getCollisionCategory() & mask) != 0) {
+                        expected.add(distanceSquared(x, y, entity.getCollisionBox()));
+                    }
+                }
+                expected.sort();
+                expected.truncate(count);
+                
+                //compare distances so that ties may be broken either way
+                assertEquals(expected.size, results.size);
+                for (int i = 0; i < results.size; i++) {
+                    assertEquals(expected.get(i), distanceSquared(x, y, results.get(i).getCollisionBox()), 0.0f);
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void raycastMatchesBruteForce() {
+        int hits = 0;
+        for (int step = 0; step < STEPS; step++) {
+            churn();
+            for (int query = 0; query < 20; query++) {
+                float x1 = random.nextFloat() * 1000.0f;
+                float y1 = random.nextFloat() * 1000.0f;
+                float x2 = random.nextFloat() * 1000.0f;
+                float y2 = random.nextFloat() * 1000.0f;
+                int mask = 1 + random.nextInt(7);
+                Entity hit = tree.raycast(x1, y1, x2, y2, mask);
+                
+                float expected = -1.0f;
+                for (TestEntity entity : live) {
+                    float fraction = fraction(x1, y1, x2, y2, entity.getCollisionBox());
+                    if ((entity.getCollisionCategory() & mask) != 0 && fraction >= 0.0f && (expected < 0.0f || fraction < expected)) {
+                        expected = fraction;
+                    }
+                }
+                
+                if (expected < 0.0f) {
+                    assertNull(hit);
+                } else {
+                    hits++;
+                    assertNotNull(hit);
+                    assertEquals(expected, fraction(x1, y1, x2, y2, hit.getCollisionBox()), 0.0f);
+                }
+            }
+        }
+        assertTrue(hits > 0);
+    }
+    
+    static float distanceSquared(float x, float y, Rectangle box) {
+        float dx = Math.max(0.0f, Math.max(box.x - x, x - (box.x + box.width)));
+        float dy = Math.max(0.0f, Math.max(box.y - y, y - (box.y + box.height)));
+        return dx * dx + dy * dy;
+    }
+    
+    /**
+     * Returns the fraction along the segment at which it enters the box, or -1
+     * if it misses the box.
+     */
+    static float fraction(float x1, float y1, float x2, float y2, Rectangle box) {
+        float enter = 0.0f;
+        float exit = 1.0f;
+        float[] starts = {x1, y1};
+        float[] deltas = {x2 - x1, y2 - y1};
+        float[] mins = {box.x, box.y};
+        float[] maxes = {box.x + box.width, box.y + box.height};
+        for (int axis = 0; axis < 2; axis++) {
+            if (deltas[axis] == 0.0f) {
+                if (starts[axis] < mins[axis] || starts[axis] > maxes[axis]) {
+                    return -1.0f;
+                }
+            } else {
+                float t1 = (mins[axis] - starts[axis]) / deltas[axis];
+                float t2 = (maxes[axis] - starts[axis]) / deltas[axis];
+                enter = Math.max(enter, Math.min(t1, t2));
+                exit = Math.min(exit, Math.max(t1, t2));
+            }
+        }
+        return enter <= exit ? enter : -1.0f;
+    }
+    
+    static String sortedNames(Array<Entity> entities) {
+        String[] names = new String[entities.size];
+        for (int i = 0; i < entities.size; i++) {
+            names[i] = entities.get(i).toString();
+        }
+        Arrays.sort(names);
+        return Arrays.toString(names);
+    }
+}
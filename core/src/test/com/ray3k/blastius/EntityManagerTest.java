@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EntityManagerTest {
+    private static final int TICKS = 50;
+    
+    @Test
+    public void spatialHashMatchesBruteForce() {
+        List<String> hashed = simulate(true);
+        List<String> bruteForce = simulate(false);
+        assertFalse(hashed.isEmpty());
+        assertEquals(bruteForce, hashed);
+    }
+    
+    /**
+     * Runs the same random scene with either broadphase and returns every
+     * collision callback as "tick: entity -> other", sorted per tick.
+     */
+    private List<String> simulate(boolean usingSpatialHash) {
+        Random random = new Random(1);
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        manager.setUsingSpatialHash(usingSpatialHash);
+        Array<TestEntity> entities = new Array<TestEntity>();
+        for (int i = 0; i < 300; i++) {
+            TestEntity entity = new TestEntity("e" + i, 4.0f + random.nextFloat() * 20.0f, 4.0f + random.nextFloat() * 20.0f);
+            entity.setPosition(random.nextFloat() * 900.0f - 50.0f, random.nextFloat() * 700.0f - 50.0f);
+            entity.setMotion(random.nextFloat() * 400.0f, random.nextFloat() * 360.0f);
+            entity.setCollisionCategory(1 << random.nextInt(3));
+            entity.setCollisionMask(random.nextInt(8));
+            entities.add(entity);
+            manager.addEntity(entity);
+        }
+        
+        List<String> result = new ArrayList<String>();
+        for (int tick = 0; tick < TICKS; tick++) {
+            manager.act(0.01f);
+            List<String> callbacks = new ArrayList<String>();
+            for (TestEntity entity : entities) {
+                for (Entity other : entity.collisions) {
+                    callbacks.add(tick + ": " + entity + " -> " + other);
+                }
+                entity.collisions.clear();
+            }
+            Collections.sort(callbacks);
+            result.addAll(callbacks);
+        }
+        return result;
+    }
+    
+    @Test
+    public void collisionsFollowCategoriesAndMasks() {
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        TestEntity hunter = new TestEntity("hunter", 10.0f, 10.0f);
+        hunter.setCollisionCategory(1);
+        hunter.setCollisionMask(2);
+        TestEntity prey = new TestEntity("prey", 10.0f, 10.0f);
+        prey.setCollisionCategory(2);
+        prey.setCollisionMask(0);
+        TestEntity bystander = new TestEntity("bystander", 10.0f, 10.0f);
+        bystander.setCollisionCategory(4);
+        bystander.setCollisionMask(0);
+        TestEntity ignored = new TestEntity("ignored", 10.0f, 10.0f);
+        ignored.setCollisionCategory(2);
+        ignored.setCollisionMask(1);
+        ignored.setCheckingCollisions(false);
+        
+        for (TestEntity entity : new TestEntity[] {hunter, prey, bystander, ignored}) {
+            entity.setPosition(100.0f, 100.0f);
+            manager.addEntity(entity);
+        }
+        manager.act(0.01f);
+        
+        assertEquals(1, hunter.collisions.size);
+        assertSame(prey, hunter.collisions.first());
+        assertEquals(0, prey.collisions.size);
+        assertEquals(0, bystander.collisions.size);
+        assertEquals(0, ignored.collisions.size);
+    }
+    
+    @Test
+    public void removalSwapsInTheLastEntity() {
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        TestEntity[] entities = new TestEntity[5];
+        for (int i = 0; i < entities.length; i++) {
+            entities[i] = new TestEntity("e" + i, 10.0f, 10.0f);
+            entities[i].setCollisionCategory(1);
+            manager.addEntity(entities[i]);
+        }
+        assertEquals("additions are applied at the next act", 0, manager.getEntities().size);
+        manager.act(0.01f);
+        assertEquals(5, manager.getEntities().size);
+        
+        long handle = entities[1].getHandle();
+        entities[1].dispose();
+        entities[3].dispose();
+        assertEquals("removals are applied at the next act", 5, manager.getEntities().size);
+        manager.act(0.01f);
+        
+        Array<Entity> remaining = manager.getEntities();
+        assertEquals(3, remaining.size);
+        assertSame(entities[0], remaining.get(0));
+        assertSame(entities[4], remaining.get(1));
+        assertSame(entities[2], remaining.get(2));
+        for (int i = 0; i < remaining.size; i++) {
+            assertEquals(i, remaining.get(i).listPosition);
+        }
+        
+        Array<Entity> category = manager.getEntitiesByCategory(1);
+        assertEquals(3, category.size);
+        assertFalse(category.contains(entities[1], true));
+        assertFalse(category.contains(entities[3], true));
+        assertNull(manager.resolve(handle));
+    }
+    
+    @Test
+    public void entitiesAddedDuringActAreNotDrawnBeforeTheyArePosed() {
+        final EntityManager manager = new EntityManager(800.0f, 600.0f);
+        final TestEntity child = new TestEntity("child", 10.0f, 10.0f);
+        TestEntity spawner = new TestEntity("spawner", 10.0f, 10.0f) {
+            @Override
+            public void act(float delta) {
+                if (child.getHandle() == 0) {
+                    manager.addEntity(child);
+                }
+            }
+        };
+        manager.addEntity(spawner);
+        
+        manager.act(0.01f);
+        manager.draw(null, 0.01f);
+        assertEquals(1, spawner.draws);
+        assertEquals(0, child.poses);
+        assertEquals(0, child.draws);
+        
+        manager.act(0.01f);
+        manager.draw(null, 0.01f);
+        assertEquals(1, child.poses);
+        assertEquals(1, child.draws);
+    }
+    
+    @Test
+    public void pooledEntitiesAreNotCulledWhenReused() {
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        manager.setViewBounds(new Rectangle(0.0f, 0.0f, 100.0f, 100.0f));
+        EntityPool<TestEntity> pool = new EntityPool<TestEntity>() {
+            @Override
+            protected TestEntity createEntity() {
+                return new TestEntity("pooled", 10.0f, 10.0f);
+            }
+        };
+        
+        TestEntity entity = pool.obtain();
+        entity.setPosition(500.0f, 500.0f);
+        manager.addEntity(entity);
+        manager.act(0.01f);
+        manager.draw(null, 0.01f);
+        assertTrue(entity.isCulled());
+        
+        entity.dispose();
+        manager.act(0.01f);
+        assertSame(entity, pool.obtain());
+        assertFalse(entity.isCulled());
+    }
+    
+    @Test
+    public void spatialQueriesMatchBruteForce() {
+        Random random = new Random(4);
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        Array<TestEntity> entities = new Array<TestEntity>();
+        Array<Entity> results = new Array<Entity>();
+        int hits = 0;
+        for (int tick = 0; tick < 60; tick++) {
+            for (int i = 0; i < 10; i++) {
+                TestEntity entity = new TestEntity("e" + tick + "-" + i, 4.0f + random.nextFloat() * 20.0f, 4.0f + random.nextFloat() * 20.0f);
+                entity.setPosition(random.nextFloat() * 800.0f, random.nextFloat() * 600.0f);
+                entity.setMotion(random.nextFloat() * 600.0f, random.nextFloat() * 360.0f);
+                entity.setCollisionCategory(1 << random.nextInt(3));
+                entities.add(entity);
+                manager.addEntity(entity);
+            }
+            for (int i = 0; i < 7 && entities.size > 0; i++) {
+                entities.removeIndex(random.nextInt(entities.size)).dispose();
+            }
+            manager.act(0.01f);
+            
+            //the tree is built on the first query and maintained by act afterwards
+            if (tick < 10) {
+                continue;
+            }
+            
+            Array<Entity> live = new Array<Entity>();
+            for (Entity entity : manager.getEntities()) {
+                if (!entity.isDestroyed()) {
+                    live.add(entity);
+                }
+            }
+            
+            for (int query = 0; query < 10; query++) {
+                float x = random.nextFloat() * 800.0f;
+                float y = random.nextFloat() * 600.0f;
+                int mask = 1 + random.nextInt(7);
+                
+                float radius = random.nextFloat() * 150.0f;
+                manager.queryRadius(x, y, radius, mask, results);
+                Array<Entity> expected = new Array<Entity>();
+                for (Entity entity : live) {
+                    if ((entity.getCollisionCategory() & mask) != 0 && DynamicAabbTreeTest.distanceSquared(x, y, entity.getCollisionBox()) <= radius * radius) {
+                        expected.add(entity);
+                    }
+                }
+                assertEquals(DynamicAabbTreeTest.sortedNames(expected), DynamicAabbTreeTest.sortedNames(results));
+                
+                int count = 1 + random.nextInt(5);
+                manager.queryNearest(x, y, count, mask, results);
+                Array<Float> distances = new Array<Float>();
+                for (Entity entity : live) {
+                    if ((entity.getCollisionCategory() & mask) != 0) {
+                        distances.add(DynamicAabbTreeTest.distanceSquared(x, y, entity.getCollisionBox()));
+                    }
+                }
+                distances.sort();
+                distances.truncate(count);
+                assertEquals(distances.size, results.size);
+                for (int i = 0; i < results.size; i++) {
+                    assertEquals(distances.get(i), DynamicAabbTreeTest.distanceSquared(x, y, results.get(i).getCollisionBox()), 0.0f);
+                }
+                
+                float x2 = random.nextFloat() * 800.0f;
+                float y2 = random.nextFloat() * 600.0f;
+                Entity hit = manager.raycast(x, y, x2, y2, mask);
+                float fraction = -1.0f;
+                for (Entity entity : live) {
+                    float entityFraction = DynamicAabbTreeTest.fraction(x, y, x2, y2, entity.getCollisionBox());
+                    if ((entity.getCollisionCategory() & mask) != 0 && entityFraction >= 0.0f && (fraction < 0.0f || entityFraction < fraction)) {
+                        fraction = entityFraction;
+                    }
+                }
+                if (fraction < 0.0f) {
+                    assertNull(hit);
+                } else {
+                    hits++;
+                    assertEquals(fraction, DynamicAabbTreeTest.fraction(x, y, x2, y2, hit.getCollisionBox()), 0.0f);
+                }
+            }
+        }
+        assertTrue(hits > 0);
+    }
+}
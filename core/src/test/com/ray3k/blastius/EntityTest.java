@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class EntityTest {
+    /**
+     * Moves the entity from one position to another as a single integration
+     * step would and places its collision box at the new position.
+     */
+    private static void step(Entity entity, float x1, float y1, float x2, float y2) {
+        entity.setPosition(x1, y1);
+        entity.storePreviousPosition();
+        entity.setPosition(x2, y2);
+        entity.getCollisionBox().setPosition(x2, y2);
+    }
+    
+    @Test
+    public void fastEntitiesDoNotTunnel() {
+        TestEntity bullet = new TestEntity("bullet", 4.0f, 4.0f);
+        TestEntity target = new TestEntity("target", 10.0f, 10.0f);
+        step(bullet, 0.0f, 0.0f, 100.0f, 0.0f);
+        step(target, 50.0f, -3.0f, 50.0f, -3.0f);
+        
+        assertFalse(bullet.getCollisionBox().overlaps(target.getCollisionBox()));
+        assertTrue(bullet.overlapsSwept(target));
+        assertTrue(target.overlapsSwept(bullet));
+    }
+    
+    @Test
+    public void sweepsMissTargetsOffThePath() {
+        TestEntity bullet = new TestEntity("bullet", 4.0f, 4.0f);
+        TestEntity target = new TestEntity("target", 10.0f, 10.0f);
+        step(bullet, 0.0f, 0.0f, 100.0f, 0.0f);
+        step(target, 50.0f, 20.0f, 50.0f, 20.0f);
+        assertFalse(bullet.overlapsSwept(target));
+        
+        step(bullet, 0.0f, 0.0f, 30.0f, 0.0f);
+        step(target, 50.0f, 0.0f, 50.0f, 0.0f);
+        assertFalse("stops short of the target", bullet.overlapsSwept(target));
+        
+        step(bullet, 0.0f, 0.0f, 100.0f, 100.0f);
+        step(target, 60.0f, 20.0f, 60.0f, 20.0f);
+        assertFalse("passes beside the target diagonally", bullet.overlapsSwept(target));
+    }
+    
+    @Test
+    public void sweepsUseRelativeMotion() {
+        TestEntity bullet = new TestEntity("bullet", 4.0f, 4.0f);
+        TestEntity target = new TestEntity("target", 10.0f, 10.0f);
+        
+        //both move the same way, so they never meet
+        step(bullet, 0.0f, 0.0f, 100.0f, 0.0f);
+        step(target, 20.0f, 0.0f, 120.0f, 0.0f);
+        assertFalse(bullet.overlapsSwept(target));
+        
+        //head on, swapping sides within the step
+        step(bullet, 0.0f, 0.0f, 100.0f, 0.0f);
+        step(target, 80.0f, 0.0f, -20.0f, 0.0f);
+        assertFalse(bullet.getCollisionBox().overlaps(target.getCollisionBox()));
+        assertTrue(bullet.overlapsSwept(target));
+        
+        //the target moves across the path of a bullet that stands still
+        step(bullet, 50.0f, 50.0f, 50.0f, 50.0f);
+        step(target, 0.0f, 50.0f, 100.0f, 50.0f);
+        assertTrue(bullet.overlapsSwept(target));
+    }
+}
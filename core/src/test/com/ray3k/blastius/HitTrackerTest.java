@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HitTrackerTest {
+    @Test
+    public void entriesLastUntilTheEntityIsRemoved() {
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        HitTracker tracker = new HitTracker(manager);
+        TestEntity tracer = new TestEntity("tracer", 10.0f, 10.0f);
+        manager.addEntity(tracer);
+        manager.act(0.01f);
+        
+        tracker.add(tracer);
+        for (int i = 0; i < 10; i++) {
+            manager.act(0.01f);
+        }
+        assertTrue(tracker.contains(tracer));
+        
+        long handle = tracer.getHandle();
+        tracer.dispose();
+        manager.act(0.01f);
+        TestEntity reused = new TestEntity("reused", 10.0f, 10.0f);
+        manager.addEntity(reused);
+        assertEquals("the new entity takes over the freed slot", (int) handle, (int) reused.getHandle());
+        assertFalse(tracker.contains(reused));
+    }
+    
+    @Test
+    public void removedEntitiesArePurged() {
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        HitTracker tracker = new HitTracker(manager);
+        for (int i = 0; i < 100; i++) {
+            TestEntity tracer = new TestEntity("tracer" + i, 10.0f, 10.0f);
+            manager.addEntity(tracer);
+            tracker.add(tracer);
+            tracer.dispose();
+            manager.act(0.01f);
+        }
+        assertTrue(tracker.size() < 32);
+    }
+}
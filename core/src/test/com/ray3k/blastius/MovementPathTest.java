@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.math.CatmullRomSpline;
+import com.badlogic.gdx.math.Vector2;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MovementPathTest {
+    private static final float[] SQUARE = {-50.0f, -50.0f, 50.0f, -50.0f, 50.0f, 50.0f, -50.0f, 50.0f};
+    private static final float DURATION = 2.0f;
+    
+    @Test
+    public void passesThroughTheControlPointsAndLoops() {
+        MovementPath path = new MovementPath(SQUARE, DURATION);
+        Vector2 position = new Vector2();
+        for (int loop = 0; loop < 3; loop++) {
+            for (int i = 0; i < 4; i++) {
+                path.getPosition(0.0f, 0.0f, 0.0f, 0.0f, loop * DURATION + i * DURATION / 4.0f, position);
+                assertEquals(SQUARE[i * 2], position.x, 0.001f);
+                assertEquals(SQUARE[i * 2 + 1], position.y, 0.001f);
+            }
+        }
+    }
+    
+    @Test
+    public void matchesAClosedCatmullRomSpline() {
+        Vector2[] controlPoints = new Vector2[SQUARE.length / 2];
+        for (int i = 0; i < controlPoints.length; i++) {
+            controlPoints[i] = new Vector2(SQUARE[i * 2], SQUARE[i * 2 + 1]);
+        }
+        CatmullRomSpline<Vector2> spline = new CatmullRomSpline<Vector2>(controlPoints, true);
+        MovementPath path = new MovementPath(SQUARE, DURATION);
+        
+        Vector2 expected = new Vector2();
+        Vector2 position = new Vector2();
+        for (int i = 0; i < 100; i++) {
+            spline.valueAt(expected, i / 100.0f);
+            path.getPosition(0.0f, 0.0f, 0.0f, 0.0f, i / 100.0f * DURATION, position);
+            assertEquals(expected.x, position.x, 0.001f);
+            assertEquals(expected.y, position.y, 0.001f);
+        }
+    }
+    
+    @Test
+    public void driftsFromTheSpawnPosition() {
+        MovementPath path = new MovementPath(SQUARE, DURATION);
+        Vector2 position = new Vector2();
+        path.getPosition(100.0f, 600.0f, 10.0f, -100.0f, DURATION * 2.25f, position);
+        assertEquals(100.0f + 10.0f * DURATION * 2.25f + SQUARE[2], position.x, 0.001f);
+        assertEquals(600.0f - 100.0f * DURATION * 2.25f + SQUARE[3], position.y, 0.001f);
+    }
+    
+    @Test
+    public void staysOutsideAfterTheExitTime() {
+        MovementPath path = new MovementPath(SQUARE, DURATION);
+        float exitTime = path.getExitTime(400.0f, 800.0f, 0.0f, -100.0f, -200.0f, -200.0f, 1000.0f, 800.0f);
+        
+        Vector2 position = new Vector2();
+        boolean insideBefore = false;
+        for (float time = 0.0f; time < exitTime + DURATION * 3.0f; time += 0.01f) {
+            path.getPosition(400.0f, 800.0f, 0.0f, -100.0f, time, position);
+            if (time >= exitTime) {
+                assertTrue("inside at " + time, position.y < -200.0f);
+            } else if (time > exitTime - DURATION) {
+                insideBefore |= position.y >= -200.0f;
+            }
+        }
+        assertTrue("the exit time is not later than needed", insideBefore);
+        
+        assertEquals(Float.POSITIVE_INFINITY, path.getExitTime(0.0f, 0.0f, 0.0f, 0.0f, -200.0f, -200.0f, 1000.0f, 800.0f), 0.0f);
+        assertEquals(0.0f, path.getExitTime(400.0f, -1000.0f, 0.0f, -100.0f, -200.0f, -200.0f, 1000.0f, 800.0f), 0.0f);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RecordingBatchTest {
+    private GL20 gl;
+    private GL20 gl20;
+    private Texture texture1;
+    private Texture texture2;
+    
+    /**
+     * Creates textures against a GL that ignores every call, since the
+     * recording batch only compares texture identities. The GL the other
+     * tests see is restored afterwards.
+     */
+    @Before
+    public void createTextures() {
+        gl = Gdx.gl;
+        gl20 = Gdx.gl20;
+        Gdx.gl = Gdx.gl20 = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] {GL20.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                Class<?> type = method.getReturnType();
+                if (type == boolean.class) {
+                    return false;
+                } else if (type == int.class) {
+                    return 0;
+                } else if (type == float.class) {
+                    return 0.0f;
+                }
+                return null;
+            }
+        });
+        texture1 = new Texture(new EmptyTextureData());
+        texture2 = new Texture(new EmptyTextureData());
+    }
+    
+    @After
+    public void uninstall() {
+        Core.recordingBatch = null;
+        Gdx.gl = gl;
+        Gdx.gl20 = gl20;
+    }
+    
+    @Test
+    public void countsAKnownDrawSequence() {
+        RecordingBatch batch = new RecordingBatch(8);
+        TextureRegion region1 = new TextureRegion(texture1);
+        TextureRegion region2 = new TextureRegion(texture2);
+        
+        batch.begin();
+        batch.setSource(String.class);
+        batch.draw(region1, 0.0f, 0.0f);
+        batch.draw(region1, 0.0f, 0.0f);
+        //the buffer holds two quads
+        batch.draw(texture1, 0.0f, 0.0f);
+        batch.setSource(Integer.class);
+        batch.draw(region2, 0.0f, 0.0f);
+        batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+        batch.draw(texture2, new float[40], 0, 40);
+        //an unchanged blend function does not flush
+        batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+        batch.setSource(null);
+        batch.draw(region1, 0.0f, 0.0f);
+        batch.end();
+        
+        assertEquals(6, batch.getDrawCount());
+        assertEquals(28, batch.getVertexCount());
+        assertEquals(14, batch.getTriangleCount());
+        //buffer full, texture switch, blend change, texture switch and end
+        assertEquals(5, batch.getFlushCount());
+        assertEquals(2, batch.getTextureSwitchCount());
+        assertEquals(3, batch.getSubmissions(String.class));
+        assertEquals(2, batch.getSubmissions(Integer.class));
+        
+        final int[] reported = new int[1];
+        batch.setFrameListener(new RecordingBatch.FrameListener() {
+            @Override
+            public void frameEnded(RecordingBatch batch) {
+                reported[0] = batch.getFlushCount();
+            }
+        });
+        batch.endFrame();
+        assertEquals(5, reported[0]);
+        assertEquals(1, batch.getFrame());
+        assertEquals(0, batch.getDrawCount());
+        assertEquals(0, batch.getFlushCount());
+        assertEquals(0, batch.getSubmissions(String.class));
+    }
+    
+    @Test
+    public void entitiesSharingATextureAreDrawnTogether() {
+        RecordingBatch batch = new RecordingBatch(1000);
+        Core.recordingBatch = batch;
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        for (int i = 0; i < 6; i++) {
+            RegionEntity entity = new RegionEntity();
+            entity.setTextureRegion(new TextureRegion(i % 2 == 0 ? texture1 : texture2));
+            manager.addEntity(entity);
+        }
+        manager.act(0.01f);
+        
+        batch.begin();
+        manager.draw(null, 0.01f);
+        batch.end();
+        
+        assertEquals(6, batch.getDrawCount());
+        assertEquals(2, batch.getFlushCount());
+        assertEquals(1, batch.getTextureSwitchCount());
+        assertEquals(manager.getFlushCount(), batch.getFlushCount());
+        assertEquals(6, batch.getSubmissions(RegionEntity.class));
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void drawingRequiresBegin() {
+        new RecordingBatch(8).draw(texture1, 0.0f, 0.0f);
+    }
+    
+    private static class RegionEntity extends TextureEntity {
+        @Override
+        public void create() {
+        }
+
+        @Override
+        public void act(float delta) {
+        }
+
+        @Override
+        public void actEnd(float delta) {
+        }
+
+        @Override
+        public void drawSub(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void collision(Entity other) {
+        }
+    }
+    
+    private static class EmptyTextureData implements TextureData {
+        @Override
+        public TextureDataType getType() {
+            return TextureDataType.Custom;
+        }
+
+        @Override
+        public boolean isPrepared() {
+            return true;
+        }
+
+        @Override
+        public void prepare() {
+        }
+
+        @Override
+        public Pixmap consumePixmap() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean disposePixmap() {
+            return false;
+        }
+
+        @Override
+        public void consumeCustomData(int target) {
+        }
+
+        @Override
+        public int getWidth() {
+            return 16;
+        }
+
+        @Override
+        public int getHeight() {
+            return 16;
+        }
+
+        @Override
+        public Pixmap.Format getFormat() {
+            return Pixmap.Format.RGBA8888;
+        }
+
+        @Override
+        public boolean useMipMaps() {
+            return false;
+        }
+
+        @Override
+        public boolean isManaged() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.esotericsoftware.spine.Animation;
+import com.esotericsoftware.spine.SkeletonData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SpineTwoColorEntityTest {
+    private static final float DELTA = 0.01f;
+    private int lodInterval;
+    
+    @Before
+    public void setUp() {
+        lodInterval = SpineTwoColorEntity.lodInterval;
+        SpineTwoColorEntity.lodInterval = 4;
+    }
+    
+    @After
+    public void tearDown() {
+        SpineTwoColorEntity.lodInterval = lodInterval;
+    }
+    
+    @Test
+    public void culledEntitiesApplyDeferredAnimationWhenBoundsAreRequested() {
+        SkeletonData skeletonData = new SkeletonData();
+        skeletonData.getAnimations().add(new Animation("idle", new Array<Animation.Timeline>(), 1.0f));
+        EntityManager manager = new EntityManager(800.0f, 600.0f);
+        manager.setViewBounds(new Rectangle(0.0f, 0.0f, 100.0f, 100.0f));
+        Skeletal entity = new Skeletal(new SkeletonArchetype(skeletonData, 0.0f));
+        entity.setPosition(500.0f, 500.0f);
+        entity.setMotion(100.0f, 0.0f);
+        manager.addEntity(entity);
+        
+        //the first tick applies the animation and poses the entity, the draw culls it
+        manager.act(DELTA);
+        manager.draw(null, DELTA);
+        assertTrue(entity.isCulled());
+        
+        //the next ticks fall between LOD ticks, so the animation is deferred while the entity moves
+        manager.act(DELTA);
+        manager.draw(null, DELTA);
+        manager.act(DELTA);
+        manager.draw(null, DELTA);
+        assertEquals(DELTA, entity.getAnimationState().getCurrent(0).getTrackTime(), 0.0001f);
+        
+        entity.getSkeletonBounds();
+        assertEquals(3.0f * DELTA, entity.getAnimationState().getCurrent(0).getTrackTime(), 0.0001f);
+        assertEquals(entity.getX(), entity.getSkeleton().getX(), 0.0f);
+        assertEquals(entity.getY(), entity.getSkeleton().getY(), 0.0f);
+        
+        //nothing is left to apply on the next request
+        entity.getSkeletonBounds();
+        assertEquals(3.0f * DELTA, entity.getAnimationState().getCurrent(0).getTrackTime(), 0.0001f);
+    }
+    
+    /**
+     * Has no bounding box attachments, so it gives itself a collision box that
+     * can be culled.
+     */
+    private static class Skeletal extends SpineTwoColorEntity {
+        public Skeletal(SkeletonArchetype archetype) {
+            super(archetype, "idle", null);
+        }
+        
+        @Override
+        public void updatePose(float delta) {
+            super.updatePose(delta);
+            getCollisionBox().setSize(10.0f, 10.0f);
+        }
+        
+        @Override
+        public void create() {
+        }
+
+        @Override
+        public void actSub(float delta) {
+        }
+
+        @Override
+        public void actEnd(float delta) {
+        }
+
+        @Override
+        public void drawSub(SpriteBatch spriteBatch, float delta) {
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+        @Override
+        public void collision(Entity other) {
+        }
+    }
+}
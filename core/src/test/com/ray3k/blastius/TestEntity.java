@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2018 Raymond Buckley.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.ray3k.blastius;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * A plain entity with a fixed size collision box that records the entities
+ * it collided with.
+ */
+public class TestEntity extends Entity {
+    public final String name;
+    public final Array<Entity> collisions;
+    public int poses;
+    public int draws;
+
+    public TestEntity(String name, float width, float height) {
+        this.name = name;
+        collisions = new Array<Entity>();
+        getCollisionBox().setSize(width, height);
+        setCheckingCollisions(true);
+    }
+
+    @Override
+    public void create() {
+    }
+
+    @Override
+    public void updatePose(float delta) {
+        poses++;
+    }
+
+    @Override
+    public void act(float delta) {
+    }
+
+    @Override
+    public void actEnd(float delta) {
+    }
+
+    @Override
+    public void draw(SpriteBatch spriteBatch, float delta) {
+        draws++;
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    @Override
+    public void collision(Entity other) {
+        collisions.add(other);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}